@@ -5,6 +5,9 @@ import java.util.function.Predicate;
 
 /**
  * Helper class to construct a rectangle.
+ * <p>
+ * The rectangles are clipped to the field, so two rectangles that contain the same positions of the field are equal,
+ * even if one of them was created with a bigger expansion.
  */
 public class Bounds {
     private final int startX;
@@ -32,11 +35,21 @@ public class Bounds {
         }
         int areaStartX = Math.max(minX - expansion, 0);
         int areaStartY = Math.max(minY - expansion, 0);
-        int areaEndX = Math.min(maxX + expansion, world.getN());
-        int areaEndY = Math.min(maxY + expansion, world.getN());
+        int areaEndX = Math.min(maxX + expansion, world.getN() - 1);
+        int areaEndY = Math.min(maxY + expansion, world.getN() - 1);
         return new Bounds(areaStartX, areaStartY, areaEndX, areaEndY);
     }
 
+    /**
+     * Construct the rectangle of all positions of the field that pass {@link Position#checkBounds(Position, int)} with
+     * the given center and size.
+     */
+    public static Bounds around(World world, Position center, int size) {
+        int last = world.getN() - 1;
+        return new Bounds(Math.max(center.getX() - size + 1, 0), Math.max(center.getY() - size + 1, 0),
+                Math.min(center.getX() + size - 1, last), Math.min(center.getY() + size - 1, last));
+    }
+
     private Bounds(int startX, int startY, int endX, int endY) {
         this.startX = startX;
         this.startY = startY;
@@ -44,6 +57,28 @@ public class Bounds {
         this.endY = endY;
     }
 
+    public int getStartX() {
+        return startX;
+    }
+
+    public int getStartY() {
+        return startY;
+    }
+
+    /**
+     * Last column of the rectangle, inclusive.
+     */
+    public int getEndX() {
+        return endX;
+    }
+
+    /**
+     * Last row of the rectangle, inclusive.
+     */
+    public int getEndY() {
+        return endY;
+    }
+
     /**
      * Checks if the given position is located in the rectangle.
      */
@@ -53,4 +88,14 @@ public class Bounds {
                 p.getY() >= startY &&
                 p.getY() <= endY;
     }
+
+    /**
+     * Checks if the given rectangle is completely located in this rectangle.
+     */
+    public boolean contains(Bounds other) {
+        return other.startX >= startX &&
+                other.endX <= endX &&
+                other.startY >= startY &&
+                other.endY <= endY;
+    }
 }
@@ -0,0 +1,152 @@
+import robot.World;
+
+/**
+ * Circular bucket queue (Dial's algorithm) of cell indices.
+ * <p>
+ * The field times are small integers, so every key added during a search is at most the largest field time bigger than
+ * the smallest key in the queue. Because of this a ring of buckets, one for each possible key, is enough to store all
+ * cells. Adding a cell or changing its key is done in constant time, polling only has to skip the empty buckets.
+ * <p>
+ * A resumed search adds the cells of its old search again, whose keys can be further apart than the ring. Such cells
+ * share a bucket with cells of other keys, so polling only takes a cell of a bucket if its key is the current key. The
+ * queue stays correct for any keys, only the buckets get longer.
+ * <p>
+ * The cells of one bucket are stored as a doubly linked list in arrays indexed by the cell, so nothing is allocated
+ * during a search. A cell is added at the head of its bucket, so cells with the same key are polled in the reverse
+ * order of their addition. This differs from the order of the {@link IndexedHeap}, a search with this queue finds paths
+ * with the same costs, but can choose another of several paths with the same cost.
+ */
+public class BucketQueue implements SearchQueue {
+    /**
+     * First cell of each bucket, -1 if the bucket is empty
+     */
+    private final int[] heads;
+    private final int[] next;
+    private final int[] previous;
+    private final int[] keys;
+    private final int mask;
+    /**
+     * Smallest key which can currently be contained in the queue
+     */
+    private int current;
+    private int size;
+
+    /**
+     * @param capacity Amount of cells that can be stored, all cell indices have to be smaller than this value.
+     * @param maxStep  Largest difference between a key that is added and the smallest key in the queue.
+     */
+    public BucketQueue(int capacity, int maxStep) {
+        int buckets = Integer.highestOneBit(Math.max(maxStep, 1)) << 1;
+        this.heads = new int[buckets];
+        this.mask = buckets - 1;
+        this.next = new int[capacity];
+        this.previous = new int[capacity];
+        this.keys = new int[capacity];
+        clear();
+    }
+
+    /**
+     * Calculates the largest key step that can happen on the given world.
+     * <p>
+     * For a normal search this is the largest field time. The heuristic of an A* search can change by the same amount
+     * per step, so the double value is used to support both kinds of searches.
+     */
+    public static int maxFieldTime(World world) {
+        int max = 0;
+        for (int y = 0; y < world.getN(); y++) {
+            for (int x = 0; x < world.getN(); x++) {
+                max = Math.max(max, world.getFieldTime(x, y));
+            }
+        }
+        return max * 2;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void add(int cell, int key) {
+        // The queue can run empty while the neighbors of the last polled cell are added, so the smallest key has to be
+        // checked on every add
+        if (size == 0 || key < current) {
+            current = key;
+        }
+        keys[cell] = key;
+        link(cell, key);
+        size++;
+    }
+
+    @Override
+    public void decreaseKey(int cell, int key) {
+        if (key >= keys[cell]) {
+            return;
+        }
+        unlink(cell);
+        keys[cell] = key;
+        link(cell, key);
+    }
+
+    @Override
+    public int peekKey() {
+        if (size == 0) {
+            throw new IllegalStateException();
+        }
+        return keys[first()];
+    }
+
+    @Override
+    public int poll() {
+        int cell = first();
+        unlink(cell);
+        size--;
+        return cell;
+    }
+
+    /**
+     * Finds the first cell with the smallest key, moves the current key up to this key. The queue must not be empty.
+     */
+    private int first() {
+        while (true) {
+            for (int cell = heads[current & mask]; cell >= 0; cell = next[cell]) {
+                if (keys[cell] == current) {
+                    return cell;
+                }
+            }
+            current++;
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = -1;
+        }
+        size = 0;
+    }
+
+    private void link(int cell, int key) {
+        int bucket = key & mask;
+        int head = heads[bucket];
+        next[cell] = head;
+        previous[cell] = -1;
+        if (head >= 0) {
+            previous[head] = cell;
+        }
+        heads[bucket] = cell;
+    }
+
+    private void unlink(int cell) {
+        int before = previous[cell];
+        int after = next[cell];
+        if (before >= 0) {
+            next[before] = after;
+        } else {
+            heads[keys[cell] & mask] = after;
+        }
+        if (after >= 0) {
+            previous[after] = before;
+        }
+    }
+}
@@ -6,19 +6,19 @@ import java.util.Set;
 public class Bundle {
     private final Set<Cluster> clusters;
     /**
-     * Accumulated time cost
+     * Accumulated time cost, stored as long because the sum of all clusters of big fields can be bigger than an int
      */
-    private final int time;
+    private final long time;
     /**
      * Amount of time penalty, created by robot if the time cost of a cluster
      * is smaller that half the size of the field.
      */
-    private final int penalty;
+    private final long penalty;
 
     public Bundle(Set<Cluster> clusters) {
         this.clusters = clusters;
-        int timeSum = 0;
-        int timePenalty = Environment.processingDuration; // Last delivered package always cost 1 penalty
+        long timeSum = 0;
+        long timePenalty = Environment.processingDuration; // Last delivered package always cost 1 penalty
         for (Cluster cluster : clusters) {
             timeSum += cluster.getTotalTime();
             if (cluster.getTotalTime() < Environment.processingDuration) {
@@ -39,7 +39,7 @@ public class Bundle {
     /**
      * The accumulated time cost of all contained clusters.
      */
-    public int getTime() {
+    public long getTime() {
         return time;
     }
 
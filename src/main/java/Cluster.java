@@ -80,7 +80,7 @@ public class Cluster implements Comparable<Cluster> {
 
     @Override
     public int compareTo(Cluster o) {
-        return getCost() - o.getCost();
+        return Integer.compare(getCost(), o.getCost());
     }
 
     public void removeUsed(CompositorSeason season) {
@@ -418,6 +418,10 @@ public class ClusterOptimiser {
     private static class OptimiserVariant {
         private final CompositorSeason season;
         private final TimeLookup lookup;
+        /**
+         * Lower bounds of the pairs that are not in the lookup, null if the landmarks are disabled
+         */
+        private final Landmarks landmarks;
         private final PathStore store;
         private final Point[] positionByIndex;
         //Position that has to be located at the end of the genome
@@ -427,6 +431,7 @@ public class ClusterOptimiser {
             this.season = season;
             this.store = store;
             this.lookup = store.getLookup();
+            this.landmarks = store.getLandmarks();
             this.positionByIndex = new Point[positions.size()];
             int index = 0;
             for (Point pos : positions) {
@@ -481,7 +486,8 @@ public class ClusterOptimiser {
             }
             if(significant != null && (significant.equals(materialPos) || significant.equals(orPos) || significant.equals(destPos))){
                 //Invalid state, because it will produce errors of the type "Tried to gather materials while having no space left!"
-                return (int)Math.pow(store.getWorld().getN(), 4);
+                long n = store.getWorld().getN();
+                return (int) Math.min(n * n * n * n, Integer.MAX_VALUE);
             }
             return getFactoryTime(genome, index) +
                     getTime(genome, index, index + 1) +
@@ -535,13 +541,14 @@ public class ClusterOptimiser {
         }
 
         /**
-         * Retrieves the time from the first index to the second index.
+         * Retrieves the time from the first index to the second index. If the pair was not searched yet the lower bound
+         * of the landmarks is used, so a cluster with an unknown pair is not rated better than it can be.
          *
          * @param from Index of the first position
          * @param to   Index of the second position
          */
         public int getTime(Genome genome, int from, int to) {
-            return lookup.getEdge(getPos(genome, from), getPos(genome, to));
+            return lookup.getEdge(getPos(genome, from), getPos(genome, to), landmarks);
         }
 
         /**
@@ -574,7 +581,8 @@ public class ClusterOptimiser {
 
         @Override
         protected float getFitness(Genome genome) {
-            int time = 0;
+            // Invalid clusters are penalised with a huge time, the sum of multiple of them does not fit into an int
+            long time = 0;
             for (int i = 0; i < variant.getClusterCount(genome); i++) {
                 int index = i * 3;
                 int z = createIndex(genome.getChromosomes(), index);
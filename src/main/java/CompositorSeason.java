@@ -4,6 +4,7 @@ public class CompositorSeason {
 
     public static CompositorSeason fromStore(PathStore store) {
         return new CompositorSeason(
+                store,
                 store.getFactoryPaths(),
                 store.getAllNeighbors()
         );
@@ -14,6 +15,7 @@ public class CompositorSeason {
                                               PathStore.Config config
     ) {
         return new CompositorSeason(
+                store,
                 previous.remainingPaths,
                 store.searchNeighbors(previous.remainingPaths.keySet(), config)
         );
@@ -28,16 +30,19 @@ public class CompositorSeason {
             remaining.put(pos, store.getPathToFactory(pos));
         }
         return new CompositorSeason(
+                store,
                 remaining,
                 store.searchNeighbors(range, config)
         );
     }
 
+    private final PathStore store;
     private final Map<Point, Path> remainingPaths;
     private final Map<Point, List<Path>> remainingNeighbors;
     private final PriorityQueue<Path> bestPaths;
 
-    private CompositorSeason(Map<Point, Path> remainingPaths, Map<Point, List<Path>> remainingNeighbors) {
+    private CompositorSeason(PathStore store, Map<Point, Path> remainingPaths, Map<Point, List<Path>> remainingNeighbors) {
+        this.store = store;
         this.remainingPaths = new HashMap<>(remainingPaths);
         this.remainingNeighbors = new HashMap<>(remainingNeighbors);
         this.bestPaths = new PriorityQueue<>();
@@ -69,10 +74,11 @@ public class CompositorSeason {
         }
         for (Path p : getNeighbors(b)) {
             if (p.getDestinationPos().equals(a)) {
-                return p;
+                return p.invert();
             }
         }
-        throw new IllegalStateException();
+        // Not a neighbor of each other in this season, ask the store which searches the path if needed
+        return store.getPath(a, b);
     }
 
     public void usePositions(Point... points) {
@@ -0,0 +1,200 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel search of the times from one origin to all cells of the field (delta-stepping).
+ * <p>
+ * The cells are kept in buckets of the width {@code delta} by their current time. The cells of the smallest bucket are
+ * relaxed by several threads at once. The neighbors that are improved into the same bucket are relaxed again in the
+ * next round until the bucket does not change anymore, the others are moved to their bucket. The time of a cell is
+ * only lowered with a compare and set, so no improvement is lost if two threads relax the same cell.
+ * <p>
+ * The threads improve the cells in any order, so only the times are searched and no paths. The dijkstra search of the
+ * {@link PathCreator} chooses the parent of each cell in the order of its queue, which the threads cannot reproduce.
+ */
+public class DeltaStepping {
+    private static final VarHandle COSTS = MethodHandles.arrayElementVarHandle(int[].class);
+    /**
+     * Smallest amount of cells of a round that is split between the threads
+     */
+    private static final int PARALLEL_THRESHOLD = 4096;
+    /**
+     * Amount of tasks per thread, so threads that finish early can take over the work of slower threads
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final int n;
+    /**
+     * Time of each field by its cell index, read by all threads
+     */
+    private final int[] times;
+    private final int delta;
+    /**
+     * Pool of the threads that relax the cells, null to relax them in the calling thread
+     */
+    private final ForkJoinPool pool;
+    private final int threads;
+    /**
+     * Amount of buckets that can contain cells at the same time
+     */
+    private final int bucketCount;
+
+    /**
+     * @param times   Time of each field
+     * @param delta   Range of the times in one bucket
+     * @param pool    Pool of the threads that relax the cells, null to relax them in the calling thread. The pool is
+     *                shared and not shut down by the search.
+     */
+    public DeltaStepping(int n, int[] times, int delta, ForkJoinPool pool) {
+        this.n = n;
+        this.times = times;
+        this.delta = Math.max(delta, 1);
+        this.pool = pool;
+        this.threads = pool == null ? 1 : pool.getParallelism();
+        int maxTime = 0;
+        for (int time : times) {
+            maxTime = Math.max(maxTime, time);
+        }
+        // A relaxed cell is at most the largest time behind the current bucket
+        this.bucketCount = maxTime / this.delta + 2;
+    }
+
+    /**
+     * Searches the time from the origin to every cell.
+     *
+     * @return Time to each cell by its index {@code y * N + x}, without the time of the origin
+     */
+    public int[] findCosts(int origin) {
+        int[] costs = new int[n * n];
+        Arrays.fill(costs, Integer.MAX_VALUE);
+        costs[origin] = 0;
+        // Cells of each bucket, a cell can be contained several times or in a bucket it has already left
+        int[][] buckets = new int[bucketCount][16];
+        int[] bucketSizes = new int[bucketCount];
+        // Round in which the cell was added to the current cells, so it is added only once per round
+        int[] added = new int[n * n];
+        int round = 0;
+        int[] current = new int[16];
+        int[] next = new int[16];
+        buckets[0][bucketSizes[0]++] = origin;
+        int pending = 1;
+        for (int bucket = 0; pending > 0; bucket++) {
+            int slot = bucket % bucketCount;
+            round++;
+            int size = 0;
+            for (int i = 0; i < bucketSizes[slot]; i++) {
+                int cell = buckets[slot][i];
+                if (added[cell] != round && bucketOf(costs[cell]) == bucket) {
+                    added[cell] = round;
+                    current = MathUtil.append(current, size++, cell);
+                }
+            }
+            pending -= bucketSizes[slot];
+            bucketSizes[slot] = 0;
+            // Relax the bucket until none of its cells is improved anymore
+            while (size > 0) {
+                round++;
+                int nextSize = 0;
+                for (int[] improved : relax(current, size, costs)) {
+                    for (int i = 1; i <= improved[0]; i++) {
+                        int cell = improved[i];
+                        int cellBucket = bucketOf(costs[cell]);
+                        if (cellBucket == bucket) {
+                            if (added[cell] != round) {
+                                added[cell] = round;
+                                next = MathUtil.append(next, nextSize++, cell);
+                            }
+                        } else {
+                            int cellSlot = cellBucket % bucketCount;
+                            buckets[cellSlot] = MathUtil.append(buckets[cellSlot], bucketSizes[cellSlot]++, cell);
+                            pending++;
+                        }
+                    }
+                }
+                int[] swap = current;
+                current = next;
+                next = swap;
+                size = nextSize;
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Relaxes the neighbors of the cells, split between the threads if there are enough cells.
+     *
+     * @return The improved cells of each task, the first entry of each array is the amount of cells
+     */
+    private List<int[]> relax(int[] cells, int size, int[] costs) {
+        if (pool == null || size < PARALLEL_THRESHOLD) {
+            return List.of(relax(cells, 0, size, costs));
+        }
+        int chunk = (size + threads * TASKS_PER_THREAD - 1) / (threads * TASKS_PER_THREAD);
+        List<Callable<int[]>> tasks = new ArrayList<>();
+        for (int start = 0; start < size; start += chunk) {
+            int from = start;
+            int to = Math.min(start + chunk, size);
+            tasks.add(() -> relax(cells, from, to, costs));
+        }
+        return invokeAll(tasks);
+    }
+
+    private int[] relax(int[] cells, int from, int to, int[] costs) {
+        int[] improved = new int[16];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int cell = cells[i];
+            int cost = (int) COSTS.getVolatile(costs, cell);
+            int x = cell % n;
+            int y = cell / n;
+            for (int j = 0; j < PathCreator.NEIGHBOR_X.length; j++) {
+                int neighborX = x + PathCreator.NEIGHBOR_X[j];
+                int neighborY = y + PathCreator.NEIGHBOR_Y[j];
+                if (neighborX < 0 || neighborX >= n || neighborY < 0 || neighborY >= n) {
+                    continue;
+                }
+                int neighbor = neighborY * n + neighborX;
+                int candidate = cost + times[neighbor];
+                int old = (int) COSTS.getVolatile(costs, neighbor);
+                while (candidate < old) {
+                    if (COSTS.compareAndSet(costs, neighbor, old, candidate)) {
+                        improved = MathUtil.append(improved, ++count, neighbor);
+                        break;
+                    }
+                    old = (int) COSTS.getVolatile(costs, neighbor);
+                }
+            }
+        }
+        improved[0] = count;
+        return improved;
+    }
+
+    private int bucketOf(int cost) {
+        return cost / delta;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (pool == null) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+                return results;
+            }
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
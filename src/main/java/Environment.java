@@ -2,10 +2,80 @@ import robot.Factory;
 import robot.Robot;
 import robot.World;
 
+import java.util.concurrent.ForkJoinPool;
+
 public class Environment {
     public static final boolean LOGGING = true;
     public static final boolean DEBUG = true;
     public static final int CLUSTER_FACTOR = 31;
+    /**
+     * Queue implementation used by the path finding. The heap finds the same paths as the original search, the bucket
+     * queue is faster but polls cells with the same cost in another order, so it can choose other paths with the same
+     * cost.
+     */
+    public static final SearchQueue.Type SEARCH_QUEUE = SearchQueue.Type.HEAP;
+    /**
+     * Amount of threads used to create the {@link PathStore}.
+     */
+    public static final int PATH_THREADS = Runtime.getRuntime().availableProcessors();
+    /**
+     * Pool of the path threads, shared by the parallel searches over the whole field. Null if there is only one path
+     * thread, then the searches run in the calling thread.
+     */
+    public static final ForkJoinPool PATH_POOL = PATH_THREADS > 1 ? new ForkJoinPool(PATH_THREADS) : null;
+    /**
+     * If true the {@link PathStore} is loaded from a snapshot of a previous run on the same world, see
+     * {@link PathStoreSnapshot}. Disabled by default, because the snapshot files are written into the working
+     * directory and a snapshot is only useful if the same world is run again.
+     */
+    public static final boolean PATH_SNAPSHOTS = false;
+    /**
+     * Directory of the snapshot files
+     */
+    public static final String SNAPSHOT_DIRECTORY = "snapshots";
+    /**
+     * Estimated amount of bytes the cached paths of the {@link PathStore} may use, before paths are evicted. This only
+     * bounds the paths kept by the cache, the paths to the neighbors and to the factory of each material are kept by
+     * the store and the seasons even after they were evicted, see {@link PathMap}.
+     */
+    public static final long PATH_CACHE_BYTES = Runtime.getRuntime().maxMemory() / 4;
+    /**
+     * Amount of landmarks used for the lower bounds of the {@link PathCreator}, zero to disable them. Each landmark
+     * needs four bytes per field, see {@link Landmarks}.
+     */
+    public static final int LANDMARKS = 6;
+    /**
+     * Size of the field from which searches over the whole field use the parallel {@link DeltaStepping} if there is
+     * more than one path thread. Smaller fields are searched faster by a single thread. Only the times are searched in
+     * parallel, the trees of paths are always searched by the dijkstra search.
+     */
+    public static final int PARALLEL_SEARCH_MIN_SIZE = 500;
+    /**
+     * Size of the field up to which searches over the whole field use the {@link FastSweeping} instead of the dijkstra
+     * search, if they are not run by the parallel {@link DeltaStepping}. The sweeping takes about a third of the time
+     * of the dijkstra search up to a size of 1000 and half of it at 2000. Bigger fields need more sweeps, at a size of
+     * 5000 it is sometimes faster and sometimes slower than the dijkstra search.
+     */
+    public static final int SWEEPING_MAX_SIZE = 2000;
+    /**
+     * If true the {@link PathStore} searches single paths on fields of at least {@link #HIERARCHY_MIN_SIZE} in the
+     * {@link PathHierarchy} instead of the field. Disabled by default, because the paths of the hierarchy can be longer
+     * than the shortest paths.
+     */
+    public static final boolean PATH_HIERARCHY = false;
+    /**
+     * Size of the field from which the landmarks are not used, they would need too much memory. Single paths on these
+     * fields are searched in the {@link PathHierarchy} if {@link #PATH_HIERARCHY} is enabled.
+     */
+    public static final int HIERARCHY_MIN_SIZE = 5000;
+    /**
+     * Width and height of the blocks of the {@link PathHierarchy} in fields.
+     */
+    public static final int HIERARCHY_BLOCK_SIZE = 64;
+    /**
+     * Distance between two entrances on the border of a block of the {@link PathHierarchy}.
+     */
+    public static final int HIERARCHY_ENTRANCE_DISTANCE = 8;
     public static int processingDuration;
 
     private final World world;
@@ -13,6 +83,7 @@ public class Environment {
     private final Factory factory;
     private final Analytics analytics;
     private final PathCreator creator;
+    private final MaterialIndex materials;
     private PathStore store;
 
     public Environment(World world, Robot robot, Factory factory) {
@@ -21,11 +92,12 @@ public class Environment {
         this.factory = factory;
         this.analytics = new Analytics(world);
         this.creator = new PathCreator(this, new Point(factory.getX(), factory.getY()));
+        this.materials = new MaterialIndex(world);
         processingDuration = world.getN() / 2;
     }
 
     public void setupStore(PathStore.Config config){
-        store = new PathStore(this, config);
+        store = PATH_SNAPSHOTS ? PathStoreSnapshot.readOrCreate(this, config) : new PathStore(this, config);
     }
 
     public Analytics getAnalytics() {
@@ -36,6 +108,10 @@ public class Environment {
         return creator;
     }
 
+    public MaterialIndex getMaterialIndex() {
+        return materials;
+    }
+
     public PathStore getStore() {
         return store;
     }
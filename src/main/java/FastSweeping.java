@@ -0,0 +1,125 @@
+import java.util.Arrays;
+
+/**
+ * Times from one or more origins to all cells of the field without a queue (fast sweeping).
+ * <p>
+ * The field is swept row by row, alternately from the top to the bottom and back. Each row first takes the times of
+ * the row before it, then passes its times from the left to the right and back. A sweep in both directions follows
+ * every path that turns up or down at most once, so the sweeps are repeated until a sweep does not lower any time
+ * anymore. At this point no step can lower a time, so the times are the same as the times of the dijkstra search.
+ * <p>
+ * The loops only contain additions and minimums without branches. The pass between two rows has no dependency
+ * between the cells, so it is vectorised by the JIT compiler. The passes inside a row depend on the cell before and
+ * are not vectorised, but read the memory in order. Rows that can not change are skipped, so the later sweeps only
+ * pass over the rows around the paths that still improve.
+ * <p>
+ * Used by {@link PathCreator#findAllCosts(Position)} on fields smaller than {@link Environment#SWEEPING_MAX_SIZE}. On
+ * bigger fields the paths turn more often, so more sweeps are needed and the sweeping is not faster anymore.
+ */
+public class FastSweeping {
+    /**
+     * Time of a cell that is not reached yet, small enough that adding a field time can not overflow
+     */
+    private static final int UNREACHED = Integer.MAX_VALUE / 2;
+
+    private final int n;
+    /**
+     * Time of each field by its cell index, added to the time of every step onto the field
+     */
+    private final int[] times;
+
+    /**
+     * @param times Time of each field
+     */
+    public FastSweeping(int n, int[] times) {
+        this.n = n;
+        this.times = times;
+    }
+
+    /**
+     * Searches the time from the nearest origin to every cell.
+     *
+     * @return Time to each cell by its index {@code y * N + x}, without the time of the origin
+     */
+    public int[] findCosts(int... origins) {
+        int[] costs = new int[n * n];
+        Arrays.fill(costs, UNREACHED);
+        for (int origin : origins) {
+            costs[origin] = 0;
+        }
+        sweep(costs);
+        return costs;
+    }
+
+    /**
+     * Lowers the given times until no step can lower them anymore.
+     *
+     * @param costs Time of each cell, the times of the origins have to be set
+     * @return The amount of sweeps over the whole field, each in one direction
+     */
+    public int sweep(int[] costs) {
+        // Tick of the last pass over each row and of the last pass that lowered a time of the row. A row is only
+        // swept again if it or the row before it has changed since its last pass, all other rows can not change.
+        int[] passed = new int[n];
+        int[] lowered = new int[n];
+        Arrays.fill(lowered, 1);
+        int tick = 1;
+        int sweeps = 0;
+        boolean changed = true;
+        while (changed) {
+            int changes = 0;
+            // The rows are swept from the top to the bottom on even and from the bottom to the top on odd sweeps
+            int step = sweeps % 2 == 0 ? 1 : -1;
+            int first = step > 0 ? 0 : n - 1;
+            for (int y = first; y >= 0 && y < n; y += step) {
+                int previous = y == first ? -1 : y - step;
+                tick++;
+                if (lowered[y] > passed[y] || previous >= 0 && lowered[previous] > passed[y]) {
+                    if (sweepRow(costs, y, previous) != 0) {
+                        lowered[y] = tick;
+                        changes = 1;
+                    }
+                }
+                passed[y] = tick;
+            }
+            sweeps++;
+            // A sweep without changes only checks the steps of its own direction, the steps in the other direction are
+            // checked by the sweep before it
+            changed = changes != 0 || sweeps < 2;
+        }
+        return sweeps;
+    }
+
+    /**
+     * Lowers the times of one row with the times of the previous row and of the cells in the row.
+     *
+     * @param previous Row that was swept before, -1 for the first row
+     * @return Non-zero if a time was lowered
+     */
+    private int sweepRow(int[] costs, int y, int previous) {
+        int row = y * n;
+        int changes = 0;
+        if (previous >= 0) {
+            int previousRow = previous * n;
+            for (int x = 0; x < n; x++) {
+                int old = costs[row + x];
+                int cost = Math.min(old, costs[previousRow + x] + times[row + x]);
+                costs[row + x] = cost;
+                changes |= old ^ cost;
+            }
+        }
+        for (int x = row + 1; x < row + n; x++) {
+            int old = costs[x];
+            int cost = Math.min(old, costs[x - 1] + times[x]);
+            costs[x] = cost;
+            changes |= old ^ cost;
+        }
+        for (int x = row + n - 2; x >= row; x--) {
+            int old = costs[x];
+            int cost = Math.min(old, costs[x + 1] + times[x]);
+            costs[x] = cost;
+            changes |= old ^ cost;
+        }
+        return changes;
+    }
+}
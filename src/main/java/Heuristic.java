@@ -0,0 +1,44 @@
+/**
+ * Estimate of the remaining cost from a position on the field to the target of an A* search.
+ * <p>
+ * The estimate has to be admissible, so it never overestimates the real cost, and consistent, so the estimate of a
+ * position is never bigger than the cost to step onto a neighbor plus the estimate of the neighbor. Only then the
+ * A* search finds the same cost as the dijkstra search.
+ */
+@FunctionalInterface
+public interface Heuristic {
+
+    /**
+     * Estimated cost from the given position to the target.
+     */
+    int estimate(int x, int y);
+
+    /**
+     * Combines this and the given heuristic by using the bigger estimate, which is still admissible and consistent if
+     * both heuristics are.
+     */
+    default Heuristic max(Heuristic other) {
+        return (x, y) -> Math.max(estimate(x, y), other.estimate(x, y));
+    }
+
+    /**
+     * Creates a heuristic which uses the manhattan distance to the target multiplied by the given minimum field time.
+     * <p>
+     * The time of the target itself is always paid on the last step, so it is used instead of the minimum for this
+     * step.
+     *
+     * @param targetTime Time that is needed to step onto the target
+     * @param minTime    Smallest time of all fields
+     */
+    static Heuristic manhattan(Point target, int targetTime, int minTime) {
+        int targetX = target.getX();
+        int targetY = target.getY();
+        return (x, y) -> {
+            int distance = Math.abs(targetX - x) + Math.abs(targetY - y);
+            if (distance == 0) {
+                return 0;
+            }
+            return targetTime + (distance - 1) * minTime;
+        };
+    }
+}
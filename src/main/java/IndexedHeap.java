@@ -0,0 +1,177 @@
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of cell indices, ordered by an integer key.
+ * <p>
+ * In contrast to the {@link java.util.PriorityQueue} the position of each cell in the heap is stored, so the key of a
+ * contained cell can be decreased in O(log n) instead of removing and adding the element again, which needs a linear
+ * search through the whole queue.
+ * <p>
+ * The heap can be cleared in constant time, the positions of a previous run are invalidated by a generation stamp, so
+ * the same instance can be reused by every search.
+ */
+public class IndexedHeap implements SearchQueue {
+    /**
+     * Cell indices, ordered as a binary heap
+     */
+    private final int[] cells;
+    /**
+     * Keys of the cells, stored next to the cells, so the heap operations don't have to look up the key of a cell
+     */
+    private final int[] keys;
+    /**
+     * Position of a cell in the heap, -1 if the cell is not contained. Only valid if the stamp of the cell matches the
+     * current generation.
+     */
+    private final int[] positions;
+    /**
+     * Generation in which the position of the cell was written the last time
+     */
+    private final int[] stamps;
+    private int generation;
+    private int size;
+
+    /**
+     * @param capacity Amount of cells that can be stored, all cell indices have to be smaller than this value.
+     */
+    public IndexedHeap(int capacity) {
+        this.cells = new int[capacity];
+        this.keys = new int[capacity];
+        this.positions = new int[capacity];
+        this.stamps = new int[capacity];
+        this.generation = 1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the given cell is currently contained in the heap.
+     */
+    public boolean contains(int cell) {
+        return stamps[cell] == generation && positions[cell] >= 0;
+    }
+
+    @Override
+    public void add(int cell, int key) {
+        int pos = size++;
+        cells[pos] = cell;
+        keys[pos] = key;
+        positions[cell] = pos;
+        stamps[cell] = generation;
+        siftUp(pos);
+    }
+
+    @Override
+    public void decreaseKey(int cell, int key) {
+        int pos = positions[cell];
+        if (key >= keys[pos]) {
+            return;
+        }
+        keys[pos] = key;
+        siftUp(pos);
+    }
+
+    /**
+     * Removes the cell and adds it again with the given key, the same way the {@link java.util.PriorityQueue} of the
+     * original search removed and added a node on every relaxation. Cells with the same key are therefore polled in
+     * the same order as by the original search, so it finds the same paths.
+     */
+    @Override
+    public void update(int cell, int key) {
+        int pos = positions[cell];
+        size--;
+        if (pos != size) {
+            // Same as PriorityQueue.removeAt, the last entry takes the free position
+            move(size, pos);
+            siftDown(pos);
+            if (cells[pos] == cells[size]) {
+                siftUp(pos);
+            }
+        }
+        add(cell, key);
+    }
+
+    @Override
+    public int peekKey() {
+        return keys[0];
+    }
+
+    @Override
+    public int poll() {
+        if (size == 0) {
+            throw new IllegalStateException();
+        }
+        int cell = cells[0];
+        positions[cell] = -1;
+        size--;
+        if (size > 0) {
+            move(size, 0);
+            siftDown(0);
+        }
+        return cell;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        generation++;
+        // Only happens after billions of searches, reset all stamps, so old positions are not valid again
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    private void siftUp(int pos) {
+        int cell = cells[pos];
+        int key = keys[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            move(parent, pos);
+            pos = parent;
+        }
+        cells[pos] = cell;
+        keys[pos] = key;
+        positions[cell] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int cell = cells[pos];
+        int key = keys[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && keys[right] < keys[child]) {
+                child = right;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            move(child, pos);
+            pos = child;
+        }
+        cells[pos] = cell;
+        keys[pos] = key;
+        positions[cell] = pos;
+    }
+
+    /**
+     * Copies the entry on the first heap position to the second one.
+     */
+    private void move(int from, int to) {
+        cells[to] = cells[from];
+        keys[to] = keys[from];
+        positions[cells[to]] = to;
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lower bounds of the time between two positions from the times of a few landmark cells to all cells (ALT: A*,
+ * landmarks and the triangle inequality).
+ * <p>
+ * The time of a path from a landmark {@code L} to a cell {@code v} is {@code d(L, v)}. The time of the reversed path
+ * pays the time of the landmark instead of the time of the cell, so {@code d(v, L) = d(L, v) - time(v) + time(L)} and
+ * a single search from each landmark is enough for both directions. For a path from {@code u} to {@code t} the
+ * triangle inequality gives {@code d(u, t) >= d(L, t) - d(L, u)} and {@code d(u, t) >= d(u, L) - d(t, L)}, the largest
+ * of these values over all landmarks is the lower bound.
+ * <p>
+ * The bound is consistent, so it can be used as the {@link Heuristic} of an A* search. The times of each landmark
+ * are stored in an int array of all cells, which needs four bytes per cell and landmark.
+ */
+public class Landmarks {
+    private final int n;
+    /**
+     * Time of each field by its cell index. The times of the landmarks include the time of the destination but not of
+     * the origin, so the bounds are corrected by the times of both positions
+     */
+    private final int[] times;
+    private final Point[] positions;
+    /**
+     * Time from each landmark to each cell, without the time of the landmark
+     */
+    private final int[][] distances;
+
+    /**
+     * Selects the landmarks and searches the times from them to all cells.
+     * <p>
+     * The first landmarks are the factory and the corners of the field. The times of the robot are not known before
+     * it drives, so every further landmark is the cell with the biggest time to its nearest landmark, which covers the
+     * parts of the field that are far from all other landmarks.
+     *
+     * @param times Time of each field
+     * @param count Amount of landmarks
+     */
+    public Landmarks(PathCreator creator, int n, int[] times, Point factory, int count) {
+        this.n = n;
+        this.times = times;
+        List<Point> selected = new ArrayList<>(count);
+        for (Point candidate : new Point[]{factory, new Point(0, 0), new Point(n - 1, 0), new Point(0, n - 1), new Point(n - 1, n - 1)}) {
+            if (selected.size() < count && !selected.contains(candidate)) {
+                selected.add(candidate);
+            }
+        }
+        List<int[]> searched = new ArrayList<>(count);
+        for (Point landmark : selected) {
+            searched.add(creator.findAllCosts(landmark));
+        }
+        while (selected.size() < count) {
+            int farthest = -1;
+            int farthestDistance = -1;
+            for (int cell = 0; cell < n * n; cell++) {
+                int nearest = Integer.MAX_VALUE;
+                for (int[] distance : searched) {
+                    nearest = Math.min(nearest, distance[cell]);
+                }
+                if (nearest > farthestDistance) {
+                    farthest = cell;
+                    farthestDistance = nearest;
+                }
+            }
+            // Every cell is already a landmark
+            if (farthestDistance <= 0) {
+                break;
+            }
+            Point landmark = new Point(farthest % n, farthest / n);
+            selected.add(landmark);
+            searched.add(creator.findAllCosts(landmark));
+        }
+        this.positions = selected.toArray(new Point[0]);
+        this.distances = searched.toArray(new int[0][]);
+    }
+
+    /**
+     * Amount of landmarks.
+     */
+    public int size() {
+        return positions.length;
+    }
+
+    /**
+     * Lower bound of the time from the first to the second position, without the time of the first position.
+     */
+    public int getLowerBound(Position from, Position to) {
+        int u = from.getY() * n + from.getX();
+        int t = to.getY() * n + to.getX();
+        int bound = 0;
+        for (int[] distance : distances) {
+            int toTarget = distance[t];
+            int toCell = distance[u];
+            bound = Math.max(bound, Math.max(toTarget - toCell, toCell - times[u] - toTarget + times[t]));
+        }
+        return bound;
+    }
+
+    /**
+     * Creates the heuristic of an A* search to the given target, the times of the landmarks to the target are only
+     * read once.
+     */
+    public Heuristic createHeuristic(Position target) {
+        int t = target.getY() * n + target.getX();
+        int[] toTarget = new int[distances.length];
+        for (int i = 0; i < distances.length; i++) {
+            toTarget[i] = distances[i][t];
+        }
+        int targetTime = times[t];
+        return (x, y) -> {
+            int u = y * n + x;
+            int bound = 0;
+            for (int i = 0; i < distances.length; i++) {
+                int toCell = distances[i][u];
+                bound = Math.max(bound, Math.max(toTarget[i] - toCell, toCell - times[u] - toTarget[i] + targetTime));
+            }
+            return bound;
+        };
+    }
+
+    /**
+     * Estimated amount of bytes used by the times of the landmarks.
+     */
+    public long getMemoryFootprint() {
+        return distances.length * (16L + n * (long) n * 4);
+    }
+}
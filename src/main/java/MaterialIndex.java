@@ -0,0 +1,113 @@
+import robot.World;
+
+/**
+ * Spatial index of the cells with materials, used to count the candidates for the neighbors of a material without a
+ * search over the field.
+ * <p>
+ * The field is split into square buckets. The cells of the materials are stored grouped by their bucket in one array,
+ * the start of each bucket in a second array, so a query only reads the buckets that overlap the queried area. The
+ * index is created from the materials of the world at the time of its creation, collected materials are not removed.
+ */
+public class MaterialIndex {
+    private static final int DEFAULT_BUCKET_SIZE = 8;
+
+    private final int n;
+    private final int bucketSize;
+    /**
+     * Amount of buckets on each axis
+     */
+    private final int buckets;
+    /**
+     * Index of the first cell of each bucket in {@link #cells}, the last entry is the amount of cells
+     */
+    private final int[] bucketStart;
+    /**
+     * Cell index of all materials, grouped by bucket and ascending in each bucket
+     */
+    private final int[] cells;
+
+    public MaterialIndex(World world) {
+        this(world, DEFAULT_BUCKET_SIZE);
+    }
+
+    /**
+     * @param bucketSize Width and height of a bucket in cells
+     */
+    public MaterialIndex(World world, int bucketSize) {
+        this.n = world.getN();
+        this.bucketSize = bucketSize;
+        this.buckets = (n + bucketSize - 1) / bucketSize;
+        this.bucketStart = new int[buckets * buckets + 1];
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                if (world.getFieldMaterials(x, y) > 0) {
+                    bucketStart[bucketOf(x, y) + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < buckets * buckets; i++) {
+            bucketStart[i + 1] += bucketStart[i];
+        }
+        this.cells = new int[bucketStart[buckets * buckets]];
+        int[] next = new int[buckets * buckets];
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                if (world.getFieldMaterials(x, y) > 0) {
+                    int bucket = bucketOf(x, y);
+                    cells[bucketStart[bucket] + next[bucket]++] = y * n + x;
+                }
+            }
+        }
+    }
+
+    /**
+     * Amount of materials in the index.
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * Amount of materials inside the rectangle.
+     * <p>
+     * The buckets of a row are stored one after another, so the materials of all buckets of a row that are completely
+     * inside the rectangle are counted by the difference of two bucket starts. Only the cells of the buckets on the
+     * border of the rectangle are read.
+     */
+    public int countInside(Bounds bounds) {
+        int startX = Math.max(bounds.getStartX(), 0);
+        int startY = Math.max(bounds.getStartY(), 0);
+        int endX = Math.min(bounds.getEndX(), n - 1);
+        int endY = Math.min(bounds.getEndY(), n - 1);
+        if (startX > endX || startY > endY) {
+            return 0;
+        }
+        // Range of the buckets of a row that are completely inside on the x axis
+        int innerStartBx = (startX + bucketSize - 1) / bucketSize;
+        int innerEndBx = (endX + 1) / bucketSize - 1;
+        int count = 0;
+        for (int by = startY / bucketSize; by <= endY / bucketSize; by++) {
+            boolean innerRow = by * bucketSize >= startY && (by + 1) * bucketSize - 1 <= endY;
+            for (int bx = startX / bucketSize; bx <= endX / bucketSize; bx++) {
+                int bucket = by * buckets + bx;
+                if (innerRow && bx == innerStartBx && innerStartBx <= innerEndBx) {
+                    count += bucketStart[by * buckets + innerEndBx + 1] - bucketStart[bucket];
+                    bx = innerEndBx;
+                    continue;
+                }
+                for (int i = bucketStart[bucket]; i < bucketStart[bucket + 1]; i++) {
+                    int x = cells[i] % n;
+                    int y = cells[i] / n;
+                    if (x >= startX && x <= endX && y >= startY && y <= endY) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private int bucketOf(int x, int y) {
+        return y / bucketSize * buckets + x / bucketSize;
+    }
+}
@@ -38,6 +38,30 @@ public class MathUtil {
         data[b] = temp;
     }
 
+    /**
+     * Sets the value at the index, the array is replaced by a copy with twice the length if the index is outside of it.
+     *
+     * @return The given array or its bigger copy
+     */
+    public static int[] append(int[] values, int index, int value) {
+        if (index >= values.length) {
+            values = Arrays.copyOf(values, Math.max(16, values.length * 2));
+        }
+        values[index] = value;
+        return values;
+    }
+
+    /**
+     * Same as {@link #append(int[], int, int)} for an array of longs.
+     */
+    public static long[] append(long[] values, int index, long value) {
+        if (index >= values.length) {
+            values = Arrays.copyOf(values, Math.max(16, values.length * 2));
+        }
+        values[index] = value;
+        return values;
+    }
+
     /**
      * Shuffles the given array.
      */
@@ -1,5 +1,3 @@
-import java.util.Objects;
-
 /**
  * Implementation of a mutable 2d position.
  * <p>
@@ -23,9 +21,10 @@ public class MutablePoint extends Position {
         return super.equals(o);
     }
 
-    @Override
-    public int hashCode() {
-        return Objects.hash(super.hashCode(), getX(), getY());
+    public MutablePoint set(int x, int y) {
+        this.x = x;
+        this.y = y;
+        return this;
     }
 
     public void set(Position pos) {
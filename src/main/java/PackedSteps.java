@@ -0,0 +1,90 @@
+/**
+ * Compact steps of a path.
+ * <p>
+ * Only the origin and the direction of each step are stored, the directions are packed with two bits per step into a
+ * long array. The times of the fields are stored as prefix sums, so the cost of any part of the path is known in
+ * constant time.
+ */
+public class PackedSteps {
+    private static final int DIRECTIONS_PER_LONG = Long.SIZE / 2;
+
+    private final Point origin;
+    private final Point destination;
+    private final int length;
+    /**
+     * Ordinal of the direction the robot has to move to reach each step, two bits per step. The origin has no
+     * direction, its bits are unused.
+     */
+    private final long[] directions;
+    private final int originTime;
+    /**
+     * Sum of the times of all steps after the origin up to each step, zero for the origin
+     */
+    private final int[] prefixTimes;
+
+    /**
+     * @param directions Ordinal of the direction to reach each step, the value of the origin is ignored
+     * @param times      Time of the field of each step, the first step is the origin
+     */
+    public PackedSteps(Point origin, Point destination, byte[] directions, int[] times) {
+        this.origin = origin;
+        this.destination = destination;
+        this.length = times.length;
+        this.directions = new long[(length + DIRECTIONS_PER_LONG - 1) / DIRECTIONS_PER_LONG];
+        for (int i = 1; i < length; i++) {
+            this.directions[i / DIRECTIONS_PER_LONG] |= (long) directions[i] << (i % DIRECTIONS_PER_LONG * 2);
+        }
+        this.originTime = times[0];
+        this.prefixTimes = new int[length];
+        for (int i = 1; i < length; i++) {
+            prefixTimes[i] = prefixTimes[i - 1] + times[i];
+        }
+    }
+
+    public Point getOrigin() {
+        return origin;
+    }
+
+    public Point getDestination() {
+        return destination;
+    }
+
+    /**
+     * Amount of steps, including the origin.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Direction the robot has to move to reach the step, null for the origin.
+     */
+    public Direction getDirection(int step) {
+        if (step == 0) {
+            return null;
+        }
+        int ordinal = (int) (directions[step / DIRECTIONS_PER_LONG] >>> (step % DIRECTIONS_PER_LONG * 2)) & 3;
+        return Direction.DIRECTIONS[ordinal];
+    }
+
+    /**
+     * Time of the field of the step.
+     */
+    public int getTime(int step) {
+        return step == 0 ? originTime : prefixTimes[step] - prefixTimes[step - 1];
+    }
+
+    /**
+     * Estimated amount of bytes used by the steps.
+     */
+    public long getMemoryFootprint() {
+        return 40L + 16L + directions.length * 8L + 16L + prefixTimes.length * 4L;
+    }
+
+    /**
+     * Time of the whole path, without the time of the origin.
+     */
+    public int getTimeCost() {
+        return prefixTimes[length - 1];
+    }
+}
@@ -1,26 +1,72 @@
 import robot.Robot;
 import robot.World;
 
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-
+import java.util.function.Supplier;
+
+/**
+ * Path between two positions on the field.
+ * <p>
+ * A path can be created lazily from the positions and the time cost only. The steps are only created from the given
+ * source if the path is actually driven, so most paths, which are only used to compare the costs, never create them.
+ * <p>
+ * The steps are stored as {@link PackedSteps}. An inverted path shares the steps of the original path and only walks
+ * them in reverse, so inverting a path is done in constant time.
+ */
 public class Path implements Comparable<Path> {
-    private final Step[] steps;
-    private final Step destination;
-    private final Step origin;
+    private final Point origin;
+    private final Point destination;
+    /**
+     * Time of the origin and destination fields, needed to calculate the cost of the inverted path
+     */
+    private final int originTime;
+    private final int destinationTime;
+    private final int time;
+    /**
+     * If true the steps are walked from the last to the first step
+     */
+    private final boolean reversed;
+    private Supplier<PackedSteps> source;
+    private PackedSteps steps;
     private int current;
-    private int time = -1;
+    /**
+     * Position of the robot while the path is driven
+     */
+    private int x;
+    private int y;
 
-    public Path(Step[] steps) {
+    public Path(PackedSteps steps) {
         this.steps = steps;
-        this.destination = steps[steps.length - 1];
-        this.origin = steps[0];
+        this.origin = steps.getOrigin();
+        this.destination = steps.getDestination();
+        this.originTime = steps.getTime(0);
+        this.destinationTime = steps.getTime(steps.getLength() - 1);
+        this.time = steps.getTimeCost();
+        this.reversed = false;
+    }
+
+    /**
+     * Creates a path which creates the steps on demand.
+     *
+     * @param time   Time cost of the path, without the time of the origin
+     * @param source Creates the steps of the path, the first step has to be the origin and the last the destination
+     */
+    public Path(Point origin, int originTime, Point destination, int destinationTime, int time, Supplier<PackedSteps> source) {
+        this(origin, originTime, destination, destinationTime, time, source, false);
+    }
+
+    private Path(Point origin, int originTime, Point destination, int destinationTime, int time, Supplier<PackedSteps> source, boolean reversed) {
+        this.origin = origin;
+        this.destination = destination;
+        this.originTime = originTime;
+        this.destinationTime = destinationTime;
+        this.time = time;
+        this.source = source;
+        this.reversed = reversed;
     }
 
     @Override
     public int compareTo(Path o) {
-        return getTimeCost() - o.getTimeCost();
+        return Integer.compare(getTimeCost(), o.getTimeCost());
     }
 
     public void drive(Robot robot, Analytics analytics) {
@@ -30,26 +76,53 @@ public class Path implements Comparable<Path> {
     }
 
     public Path invert() {
-        List<Step> reverseSteps = new LinkedList<>();
-        for (Step step : steps) {
-            reverseSteps.add(step.invert());
+        // The inverted path pays the time of the origin instead of the time of the destination
+        int invertedTime = time - destinationTime + originTime;
+        return new Path(destination, destinationTime, origin, originTime, invertedTime, this::getSteps, !reversed);
+    }
+
+    /**
+     * Returns the steps of this path, creates them if the path was created lazily. The paths of the store are shared
+     * between threads, so the steps are created under the monitor of the path.
+     */
+    private synchronized PackedSteps getSteps() {
+        if (steps == null) {
+            steps = source.get();
+            source = null;
         }
-        Collections.reverse(reverseSteps);
-        return new Path(reverseSteps.toArray(new Step[0]));
+        return steps;
     }
 
     public void move(Robot robot, Analytics analytics) {
+        PackedSteps steps = getSteps();
+        int length = steps.getLength();
         // At destination
-        if (current == steps.length) {
+        if (current == length) {
             return;
         }
-        Step step = steps[current];
-        analytics.getCellOrCreate(step.getPoint()).onEnter(step.getPoint(), current == 0 || current == (steps.length - 1));
+        if (current == 0) {
+            x = origin.getX();
+            y = origin.getY();
+        }
+        Point point;
+        Direction direction;
+        if (reversed) {
+            // The inverted path enters the fields of the original path in reverse and moves in the opposite direction
+            Direction forward = steps.getDirection(length - 1 - current);
+            direction = forward != null ? forward.opposite() : null;
+            point = new Point(x, y);
+            moveCursor(direction);
+        } else {
+            direction = steps.getDirection(current);
+            moveCursor(direction);
+            point = new Point(x, y);
+        }
+        analytics.getCellOrCreate(point).onEnter(point, current == 0 || current == (length - 1));
         current++;
-        if (step.getDirection() == null) {
+        if (direction == null) {
             return;
         }
-        switch (step.getDirection()) {
+        switch (direction) {
             case DOWN -> robot.moveDown();
             case LEFT -> robot.moveLeft();
             case RIGHT -> robot.moveRight();
@@ -57,84 +130,55 @@ public class Path implements Comparable<Path> {
         }
     }
 
+    private void moveCursor(Direction direction) {
+        if (direction == null) {
+            return;
+        }
+        switch (direction) {
+            case DOWN -> y++;
+            case LEFT -> x--;
+            case RIGHT -> x++;
+            case UP -> y--;
+        }
+    }
+
     public int getMaterial(World world) {
-        return destination.getMaterial(world);
+        return destination.getMaterials(world);
     }
 
     public int getTimeCost() {
-        if (time >= 0) {
-            return time;
-        }
-        time = 0;
-        for (Step point : steps) {
-            if (point == origin) {
-                continue;
-            }
-            time += point.getTime();
-        }
         return time;
     }
 
     public Point getDestinationPos() {
-        return destination.getPoint();
+        return destination;
     }
 
     public Point getOriginPos() {
-        return origin.getPoint();
+        return origin;
     }
 
     public boolean atDestination(Robot robot) {
-        return destination.contains(robot);
+        return robot.getX() == destination.getX() && robot.getY() == destination.getY();
+    }
+
+    /**
+     * Estimated amount of bytes used by this path, including its steps if they were already created. The steps of an
+     * inverted path are shared with the original path and only counted there.
+     */
+    public long getMemoryFootprint() {
+        return 56L + (steps != null && !reversed ? steps.getMemoryFootprint() : 0);
     }
 
     /**
      * Amount of steps in this path.
      */
     public int getStepCount() {
-        return steps.length;
+        return getSteps().getLength();
     }
 
     @Override
     public String toString() {
-        return "orig={"+ origin.getPoint() + "},dest={" + destination.getPoint() + "},steps=" + getStepCount();
-    }
-
-    public static class Step {
-        private final Point point;
-        // TODO: Remove possible value null, wtf
-        private final Direction direction;
-        private final int time;
-
-        public Step(Point point, Direction direction, int time) {
-            this.point = point;
-            this.direction = direction;
-            this.time = time;
-        }
-
-        public Direction getDirection() {
-            return direction;
-        }
-
-        public Step invert() {
-            return new Step(point, direction != null ? direction.opposite() : null, time);
-        }
-
-        public int getMaterial(World world) {
-            return point.getMaterials(world);
-        }
-
-        public Point getPoint() {
-            return point;
-        }
-
-        public int getTime() {
-            return time;
-        }
-
-        public boolean contains(Robot robot) {
-            return robot.getX() == point.getX() && robot.getY() == point
-                    .getY();
-        }
-
+        return "orig={"+ origin + "},dest={" + destination + "},steps=" + getStepCount();
     }
 }
@@ -0,0 +1,490 @@
+import com.google.common.base.Stopwatch;
+import robot.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simple benchmark of the path finding, used to compare the different implementations on the same field.
+ * <p>
+ * Usage: java PathBenchmark n
+ */
+class PathBenchmark {
+    private final World world;
+    private final Environment env;
+    private final List<Point> materials;
+
+    private PathBenchmark(int n) {
+        this.world = new World(n);
+        this.env = new Environment(world, world.getRobot(), world.getFactory());
+        this.materials = new ArrayList<>();
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                if (world.getFieldMaterials(x, y) > 0) {
+                    materials.add(new Point(x, y));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: java PathBenchmark n");
+            return;
+        }
+        PathBenchmark benchmark = new PathBenchmark(Integer.parseInt(args[0]));
+        benchmark.compareQueues();
+        benchmark.compareThreads();
+        benchmark.reportMemory();
+        benchmark.measureMaterialIndex();
+        benchmark.stressStore();
+        benchmark.compareLandmarks();
+        benchmark.compareHierarchy();
+        benchmark.compareDeltaStepping();
+        benchmark.compareSweeping();
+    }
+
+    /**
+     * Compares the queues that can be used by the {@link PathCreator} with the {@link PriorityQueue}, which has to
+     * remove and add a node again to update its cost.
+     */
+    private void compareQueues() {
+        int n = world.getN();
+        int distanceLimit = 5 + n / 2;
+        int limit = RoutingStrategy.BundleStrategy.NEIGHBOR_LIMIT;
+        for (SearchQueue.Type type : SearchQueue.Type.values()) {
+            PathCreator creator = new PathCreator(env, env.getCreator().getFactoryPos(), type);
+            Stopwatch watch = Stopwatch.createStarted();
+            long sum = 0;
+            for (Point pos : materials) {
+                for (Path p : creator.createPaths(pos, p -> p.hasMaterials(world) && !p.at(pos), limit, distanceLimit)) {
+                    sum += p.getTimeCost();
+                }
+            }
+            watch.stop();
+            Log.info(String.format("%-14s: %s (cost sum %d)", type, watch, sum));
+        }
+        Stopwatch queueWatch = Stopwatch.createStarted();
+        long queueSum = 0;
+        for (Point pos : materials) {
+            queueSum += searchWithQueue(pos, limit, distanceLimit);
+        }
+        queueWatch.stop();
+        Log.info(String.format("%-14s: %s (cost sum %d)", "PRIORITY_QUEUE", queueWatch, queueSum));
+    }
+
+    /**
+     * Reference search with a {@link PriorityQueue}, returns the sum of the costs to the nearest materials.
+     */
+    private long searchWithQueue(Point origin, int limit, int distanceLimit) {
+        int n = world.getN();
+        int[] cost = new int[n * n];
+        boolean[] inQueue = new boolean[n * n];
+        boolean[] closed = new boolean[n * n];
+        PriorityQueue<Integer> open = new PriorityQueue<>((a, b) -> cost[a] - cost[b]);
+        int start = origin.getY() * n + origin.getX();
+        cost[start] = origin.getTime(world);
+        open.add(start);
+        inQueue[start] = true;
+        long sum = 0;
+        int found = 0;
+        MutablePoint neighborPos = new MutablePoint();
+        while (!open.isEmpty()) {
+            int index = open.poll();
+            closed[index] = true;
+            Point point = new Point(index % n, index / n);
+            if (point.hasMaterials(world) && !point.at(origin)) {
+                sum += cost[index] - origin.getTime(world);
+                if (++found >= limit) {
+                    return sum;
+                }
+            }
+            for (Direction dir : Direction.DIRECTIONS) {
+                neighborPos.set(point, dir);
+                if (!neighborPos.checkBounds(n) || !neighborPos.checkBounds(origin, distanceLimit)) {
+                    continue;
+                }
+                int neighbor = neighborPos.getY() * n + neighborPos.getX();
+                if (closed[neighbor]) {
+                    continue;
+                }
+                int neighborCost = cost[index] + neighborPos.getTime(world);
+                if (!inQueue[neighbor]) {
+                    cost[neighbor] = neighborCost;
+                    open.add(neighbor);
+                    inQueue[neighbor] = true;
+                } else if (neighborCost < cost[neighbor]) {
+                    open.remove(neighbor);
+                    cost[neighbor] = neighborCost;
+                    open.add(neighbor);
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Measures the creation of the {@link PathStore} with different amounts of threads. The checksum of the found
+     * neighbors has to be the same for every amount of threads.
+     */
+    private void compareThreads() {
+        PathStore.Config config = new PathStore.Config(n -> 5 + n / 2, RoutingStrategy.BundleStrategy.NEIGHBOR_LIMIT);
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            Stopwatch watch = Stopwatch.createStarted();
+            PathStore store = new PathStore(env, config, threads);
+            watch.stop();
+            long checksum = 0;
+            for (Point pos : materials) {
+                for (Path p : store.getNeighborPaths(pos)) {
+                    checksum = checksum * 31 + p.getDestinationPos().hashCode() * 17L + p.getTimeCost();
+                }
+            }
+            Log.info(String.format("%d threads: %s (checksum %d)", threads, watch, checksum));
+        }
+    }
+
+    /**
+     * Prints the memory used by the map of the cached paths, compared to the estimated memory of a {@link HashMap}
+     * with a key object holding both points.
+     */
+    private void reportMemory() {
+        PathStore store = new PathStore(env, new PathStore.Config(n -> 5 + n / 2, RoutingStrategy.BundleStrategy.NEIGHBOR_LIMIT));
+        int count = store.getPathCount();
+        // Node of 32 bytes and a key of 24 bytes per entry, a reference per table slot with a load factor of 0.75
+        long table = Integer.highestOneBit((int) (count / 0.75f)) << 1;
+        long hashMap = count * 56L + 16 + table * 4;
+        Log.info(String.format("%d paths: path map %d KB, hash map about %d KB", count,
+                store.getPathMapFootprint() / 1024, hashMap / 1024));
+        // A step array per path and per inverted path, with a step of 24 bytes and a point of 24 bytes per step
+        long steps = 0;
+        for (Point pos : materials) {
+            steps += store.getPathToFactory(pos).getStepCount();
+            for (Path p : store.getNeighborPaths(pos)) {
+                steps += p.getStepCount();
+            }
+        }
+        Log.info(String.format("%d steps: path trees %d KB, step arrays about %d KB", steps,
+                store.getTreeFootprint() / 1024, steps * 2 * 52 / 1024));
+    }
+
+    /**
+     * Measures the counts of the {@link MaterialIndex} of the materials in the area of the neighbor search of every
+     * material.
+     */
+    private void measureMaterialIndex() {
+        MaterialIndex index = env.getMaterialIndex();
+        int distanceLimit = 5 + world.getN() / 2;
+        long found = 0;
+        Stopwatch insideWatch = Stopwatch.createStarted();
+        for (Point pos : materials) {
+            found += index.countInside(Bounds.around(world, pos, distanceLimit));
+        }
+        insideWatch.stop();
+        int queries = Math.max(materials.size(), 1);
+        Log.info(String.format("Material index: inside %.2f us per query (found %d)",
+                insideWatch.elapsed(TimeUnit.NANOSECONDS) / 1000.0 / queries, found));
+    }
+
+    /**
+     * Extends one store from several threads at once, while other threads read the times of the neighbors found on
+     * creation of the store. All writers search the same ranges in a different order, so the same pairs are inserted
+     * concurrently. The readers check the immutable times to the factory and that no lookup of an edge fails.
+     * Afterwards the time of every found pair in the lookup and of its cached path has to be one of the times found
+     * for the pair, so a lost or torn insert is counted as a wrong time.
+     */
+    private void stressStore() {
+        PathStore.Config config = new PathStore.Config(n -> 5 + n / 2, RoutingStrategy.BundleStrategy.NEIGHBOR_LIMIT);
+        PathStore store = new PathStore(env, config);
+        TimeLookup lookup = store.getLookup();
+        int n = world.getN();
+        int writers = 4;
+        int readers = 2;
+        Random random = new Random(7);
+        List<List<Point>> ranges = new ArrayList<>();
+        for (int i = 0; i < 40 && materials.size() > 1; i++) {
+            List<Point> range = new ArrayList<>(materials);
+            Collections.shuffle(range, random);
+            ranges.add(new ArrayList<>(range.subList(0, Math.min(12, range.size()))));
+        }
+        // All times found for each pair, the time of a pair may differ between searches with different areas
+        Map<Long, Set<Integer>> times = new ConcurrentHashMap<>();
+        for (Point pos : materials) {
+            for (Path p : store.getNeighborPaths(pos)) {
+                addTimes(times, pos, p);
+            }
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong reads = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            List<List<Point>> order = new ArrayList<>(ranges);
+            Collections.shuffle(order, new Random(w));
+            tasks.add(() -> {
+                for (List<Point> range : order) {
+                    for (Map.Entry<Point, List<Path>> entry : store.searchNeighbors(range, config).entrySet()) {
+                        for (Path p : entry.getValue()) {
+                            addTimes(times, entry.getKey(), p);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        for (int r = 0; r < readers; r++) {
+            tasks.add(() -> {
+                while (!done.get()) {
+                    for (Point pos : materials) {
+                        if (lookup.toFactory(pos) != store.getPathToFactory(pos).getTimeCost()) {
+                            errors.incrementAndGet();
+                        }
+                        for (Path p : store.getNeighborPaths(pos)) {
+                            if (lookup.getEdge(pos, p.getDestinationPos()) < 0) {
+                                errors.incrementAndGet();
+                            }
+                            reads.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(writers + readers);
+        Stopwatch watch = Stopwatch.createStarted();
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(pool.submit(task));
+            }
+            for (int i = 0; i < writers; i++) {
+                futures.get(i).get();
+            }
+            done.set(true);
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdown();
+        }
+        watch.stop();
+        long wrong = 0;
+        for (Map.Entry<Long, Set<Integer>> entry : times.entrySet()) {
+            int from = (int) (entry.getKey() >>> 32);
+            int to = (int) (long) entry.getKey();
+            Point a = new Point(from % n, from / n);
+            Point b = new Point(to % n, to / n);
+            if (!entry.getValue().contains(lookup.getEdge(a, b)) ||
+                    !entry.getValue().contains(store.getPath(a, b).getTimeCost())) {
+                wrong++;
+            }
+        }
+        Log.info(String.format("%d writers, %d readers: %s (%d reads, %d read errors, %d pairs, %d wrong times)",
+                writers, readers, watch, reads.get(), errors.get(), times.size(), wrong));
+    }
+
+    /**
+     * Adds the time of the path and of the inverted path to the found times of both pairs.
+     */
+    private void addTimes(Map<Long, Set<Integer>> times, Point pos, Path path) {
+        int n = world.getN();
+        times.computeIfAbsent(PathMap.key(pos, path.getDestinationPos(), n), k -> ConcurrentHashMap.newKeySet())
+                .add(path.getTimeCost());
+        times.computeIfAbsent(PathMap.key(path.getDestinationPos(), pos, n), k -> ConcurrentHashMap.newKeySet())
+                .add(path.invert().getTimeCost());
+    }
+
+    /**
+     * Compares the searches between random pairs of materials, the A* search with the manhattan distance, the A*
+     * search with the lower bounds of the {@link Landmarks} and the bidirectional search. All searches have to find
+     * the same costs.
+     */
+    private void compareLandmarks() {
+        PathCreator creator = env.getCreator();
+        Stopwatch landmarkWatch = Stopwatch.createStarted();
+        Landmarks landmarks = creator.getLandmarks();
+        landmarkWatch.stop();
+        if (landmarks == null || materials.size() < 2) {
+            return;
+        }
+        Random random = new Random(11);
+        List<Point> pairs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            pairs.add(materials.get(random.nextInt(materials.size())));
+            pairs.add(materials.get(random.nextInt(materials.size())));
+        }
+        int minTime = Integer.MAX_VALUE;
+        for (int y = 0; y < world.getN(); y++) {
+            for (int x = 0; x < world.getN(); x++) {
+                minTime = Math.min(minTime, world.getFieldTime(x, y));
+            }
+        }
+        long[] sums = new long[3];
+        Stopwatch[] watches = {Stopwatch.createUnstarted(), Stopwatch.createUnstarted(), Stopwatch.createUnstarted()};
+        long boundSum = 0;
+        for (int i = 0; i < pairs.size(); i += 2) {
+            Point from = pairs.get(i);
+            Point to = pairs.get(i + 1);
+            watches[0].start();
+            sums[0] += creator.findPath(from, to, Heuristic.manhattan(to, to.getTime(world), minTime)).getTimeCost();
+            watches[0].stop();
+            watches[1].start();
+            sums[1] += creator.findPath(from, to, landmarks.createHeuristic(to)).getTimeCost();
+            watches[1].stop();
+            watches[2].start();
+            sums[2] += creator.findPathBidirectional(from, to).getTimeCost();
+            watches[2].stop();
+            boundSum += landmarks.getLowerBound(from, to);
+        }
+        Log.info(String.format("%d landmarks: %s, %d KB, bound %.1f%% of the cost", landmarks.size(), landmarkWatch,
+                landmarks.getMemoryFootprint() / 1024, sums[2] == 0 ? 100.0 : boundSum * 100.0 / sums[2]));
+        String[] names = {"A* manhattan", "A* landmarks", "Bidirectional"};
+        for (int i = 0; i < names.length; i++) {
+            Log.info(String.format("%-14s: %s (cost sum %d)", names[i], watches[i], sums[i]));
+        }
+    }
+
+    /**
+     * Compares the latency of single paths of the {@link PathHierarchy} with the exact bidirectional search on fields of
+     * growing size up to the size of the benchmark, to show how both grow with the size of the field.
+     */
+    private void compareHierarchy() {
+        int queries = 50;
+        for (int n = world.getN() / 8; n <= world.getN(); n *= 2) {
+            if (n < Environment.HIERARCHY_BLOCK_SIZE * 2) {
+                continue;
+            }
+            World sizedWorld = new World(n);
+            PathCreator creator = new Environment(sizedWorld, sizedWorld.getRobot(), sizedWorld.getFactory()).getCreator();
+            Stopwatch buildWatch = Stopwatch.createStarted();
+            PathHierarchy hierarchy = creator.getHierarchy();
+            buildWatch.stop();
+            Random random = new Random(13);
+            Stopwatch abstractWatch = Stopwatch.createUnstarted();
+            Stopwatch refineWatch = Stopwatch.createUnstarted();
+            Stopwatch exactWatch = Stopwatch.createUnstarted();
+            long hierarchySum = 0;
+            long exactSum = 0;
+            for (int i = 0; i < queries; i++) {
+                Point from = new Point(random.nextInt(n), random.nextInt(n));
+                Point to = new Point(random.nextInt(n), random.nextInt(n));
+                abstractWatch.start();
+                Path path = hierarchy.findPath(from, to);
+                abstractWatch.stop();
+                refineWatch.start();
+                path.getStepCount();
+                refineWatch.stop();
+                exactWatch.start();
+                exactSum += creator.findPathBidirectional(from, to).getTimeCost();
+                exactWatch.stop();
+                hierarchySum += path.getTimeCost();
+            }
+            Log.info(String.format("N=%5d: hierarchy %d nodes in %s, %d KB", n, hierarchy.getNodeCount(), buildWatch,
+                    hierarchy.getMemoryFootprint() / 1024));
+            Log.info(String.format("N=%5d: %7d us abstract, %7d us refine, %7d us exact per path, %.2f%% longer", n,
+                    abstractWatch.elapsed(TimeUnit.MICROSECONDS) / queries, refineWatch.elapsed(TimeUnit.MICROSECONDS) / queries,
+                    exactWatch.elapsed(TimeUnit.MICROSECONDS) / queries, exactSum == 0 ? 0 : (hierarchySum - exactSum) * 100.0 / exactSum));
+        }
+    }
+
+    /**
+     * Compares the dijkstra search over the whole field from the factory with the {@link DeltaStepping} search with
+     * an increasing amount of threads. Every amount of threads has to find the same times as a single thread.
+     */
+    private void compareDeltaStepping() {
+        int n = world.getN();
+        int[] times = new int[n * n];
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                times[y * n + x] = world.getFieldTime(x, y);
+            }
+        }
+        PathCreator creator = env.getCreator();
+        Point factory = creator.getFactoryPos();
+        int origin = factory.getY() * n + factory.getX();
+        int delta = BucketQueue.maxFieldTime(world) / 2;
+        int runs = 5;
+        int[] expected = new DeltaStepping(n, times, delta, null).findCosts(origin);
+        Stopwatch dijkstraWatch = Stopwatch.createStarted();
+        for (int i = 0; i < runs; i++) {
+            creator.findPath(factory, p -> false);
+        }
+        dijkstraWatch.stop();
+        Log.info(String.format("Dijkstra     : %d ms per field", dijkstraWatch.elapsed(TimeUnit.MILLISECONDS) / runs));
+        for (int threads = 1; threads <= Math.max(Environment.PATH_THREADS, 1); threads *= 2) {
+            ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+            DeltaStepping search = new DeltaStepping(n, times, delta, pool);
+            boolean equal = true;
+            Stopwatch watch = Stopwatch.createStarted();
+            for (int i = 0; i < runs; i++) {
+                equal &= Arrays.equals(expected, search.findCosts(origin));
+            }
+            watch.stop();
+            if (pool != null) {
+                pool.shutdown();
+            }
+            Log.info(String.format("Delta %2d thr : %d ms per field, same times: %b", threads,
+                    watch.elapsed(TimeUnit.MILLISECONDS) / runs, equal));
+        }
+    }
+
+    /**
+     * Compares the dijkstra search over the whole field with the {@link FastSweeping} on fields of fixed sizes, which
+     * do not depend on the size of the benchmark. Both have to find the same times.
+     */
+    private void compareSweeping() {
+        for (int n : new int[]{500, 2000, 5000}) {
+            World sizedWorld = new World(n);
+            PathCreator creator = new Environment(sizedWorld, sizedWorld.getRobot(), sizedWorld.getFactory()).getCreator();
+            int[] times = new int[n * n];
+            for (int y = 0; y < n; y++) {
+                for (int x = 0; x < n; x++) {
+                    times[y * n + x] = sizedWorld.getFieldTime(x, y);
+                }
+            }
+            FastSweeping sweeping = new FastSweeping(n, times);
+            Random random = new Random(17);
+            int runs = 3;
+            Stopwatch dijkstraWatch = Stopwatch.createUnstarted();
+            Stopwatch sweepWatch = Stopwatch.createUnstarted();
+            int sweeps = 0;
+            boolean equal = true;
+            for (int i = 0; i < runs; i++) {
+                Point origin = new Point(random.nextInt(n), random.nextInt(n));
+                // A search without destinations settles the whole field on the calling thread
+                dijkstraWatch.start();
+                creator.findPath(origin, p -> false);
+                dijkstraWatch.stop();
+                int[] expected = new int[n * n];
+                creator.findCosts(origin, p -> true, n * n, n, (destination, cost) -> expected[destination.getY() * n + destination.getX()] = cost);
+                int[] costs = new int[n * n];
+                Arrays.fill(costs, Integer.MAX_VALUE / 2);
+                costs[origin.getY() * n + origin.getX()] = 0;
+                sweepWatch.start();
+                sweeps += sweeping.sweep(costs);
+                sweepWatch.stop();
+                equal &= Arrays.equals(expected, costs);
+            }
+            Log.info(String.format("N=%5d: dijkstra %d ms, sweeping %d ms with %d sweeps per field, same times: %b", n,
+                    dijkstraWatch.elapsed(TimeUnit.MILLISECONDS) / runs, sweepWatch.elapsed(TimeUnit.MILLISECONDS) / runs,
+                    sweeps / runs, equal));
+        }
+    }
+}
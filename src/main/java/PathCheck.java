@@ -0,0 +1,227 @@
+import com.google.common.base.Stopwatch;
+import robot.World;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Checks of the path finding, which compare the faster searches with the plain dijkstra search on the same field.
+ * Every check throws an {@link IllegalStateException} on the first difference, so a failed check ends the program.
+ * <p>
+ * The large world check creates its own field with the size {@link #LARGE_WORLD_SIZE}, which needs a heap of about 4 GB.
+ * <p>
+ * Usage: java -Xmx4g PathCheck n
+ */
+class PathCheck {
+    /**
+     * Amount of random pairs of positions that are compared by each check
+     */
+    private static final int PAIRS = 2000;
+    /**
+     * Amount of random origins of the resumed searches
+     */
+    private static final int ORIGINS = 200;
+    /**
+     * Size of the field of the large world check, big enough that the scaled costs of the old search overflowed
+     */
+    private static final int LARGE_WORLD_SIZE = 5000;
+
+    private final World world;
+    private final Environment env;
+    private final List<Point> materials;
+    private final Random random = new Random(42);
+
+    private PathCheck(int n) {
+        this.world = new World(n);
+        this.env = new Environment(world, world.getRobot(), world.getFactory());
+        this.materials = new ArrayList<>();
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                if (world.getFieldMaterials(x, y) > 0) {
+                    materials.add(new Point(x, y));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: java -Xmx4g PathCheck n");
+            return;
+        }
+        PathCheck check = new PathCheck(Integer.parseInt(args[0]));
+        check.checkBidirectional();
+        check.checkResume();
+        check.checkStoreResume();
+        checkLargeWorld();
+    }
+
+    /**
+     * Compares the cost of the bidirectional search with the forward dijkstra search for random pairs of materials and
+     * the factory.
+     */
+    private void checkBidirectional() {
+        PathCreator creator = env.getCreator();
+        List<Point> positions = new ArrayList<>(materials);
+        positions.add(creator.getFactoryPos());
+        Stopwatch watch = Stopwatch.createStarted();
+        for (int i = 0; i < PAIRS; i++) {
+            Point from = positions.get(random.nextInt(positions.size()));
+            Point to = positions.get(random.nextInt(positions.size()));
+            Path expected = creator.findPath(from, to::equals);
+            Path actual = creator.findPathBidirectional(from, to);
+            if (expected == null || actual == null) {
+                if (expected != actual) {
+                    throw new IllegalStateException("Bidirectional search from " + from + " to " + to + " found " + actual + ", dijkstra found " + expected);
+                }
+                continue;
+            }
+            if (actual.getTimeCost() != expected.getTimeCost() || !actual.getOriginPos().equals(from) || !actual.getDestinationPos().equals(to)) {
+                throw new IllegalStateException("Bidirectional search from " + from + " to " + to + " has the cost " + actual.getTimeCost() + ", dijkstra has " + expected.getTimeCost());
+            }
+        }
+        Log.info(String.format("Bidirectional: %d pairs OK (%s)", PAIRS, watch.stop()));
+    }
+
+    /**
+     * Compares the resumed search of a {@link PathCreator.Frontier} with a new search in the same area, for every queue.
+     * The frontier is first searched in a small area and then resumed in the area of the routing. With every cell as a
+     * destination both searches have to find the same cost for every cell, with the materials as destinations they have
+     * to find the same costs in the same order.
+     */
+    private void checkResume() {
+        int n = world.getN();
+        int smallDistance = 5 + n / 8;
+        int distance = 5 + n / 2;
+        for (SearchQueue.Type type : SearchQueue.Type.values()) {
+            PathCreator creator = new PathCreator(env, env.getCreator().getFactoryPos(), type);
+            Stopwatch watch = Stopwatch.createStarted();
+            for (int i = 0; i < ORIGINS; i++) {
+                Point origin = materials.get(random.nextInt(materials.size()));
+                checkResume(creator, origin, p -> true, Integer.MAX_VALUE, smallDistance, distance);
+                checkResume(creator, origin, p -> p.hasMaterials(world) && !p.at(origin), RoutingStrategy.BundleStrategy.NEIGHBOR_LIMIT, smallDistance, distance);
+            }
+            Log.info(String.format("Resume %s: %d origins OK (%s)", type, ORIGINS, watch.stop()));
+        }
+    }
+
+    private void checkResume(PathCreator creator, Point origin, Predicate<Position> isDestination, int limit, int smallDistance, int distance) {
+        PathCreator.Frontier frontier = creator.createFrontier(origin);
+        creator.findCosts(frontier, isDestination, limit, smallDistance, (destination, cost) -> {
+        });
+        List<Point> resumed = new ArrayList<>();
+        List<Integer> resumedCosts = new ArrayList<>();
+        creator.findCosts(frontier, isDestination, limit, distance, (destination, cost) -> {
+            resumed.add(destination);
+            resumedCosts.add(cost);
+        });
+        List<Point> fresh = new ArrayList<>();
+        List<Integer> freshCosts = new ArrayList<>();
+        creator.findCosts(creator.createFrontier(origin), isDestination, limit, distance, (destination, cost) -> {
+            fresh.add(destination);
+            freshCosts.add(cost);
+        });
+        if (!resumedCosts.equals(freshCosts)) {
+            throw new IllegalStateException("Resumed search from " + origin + " found the costs " + resumedCosts + ", a new search " + freshCosts);
+        }
+        if (limit == Integer.MAX_VALUE) {
+            Map<Point, Integer> freshCost = new HashMap<>();
+            for (int i = 0; i < fresh.size(); i++) {
+                freshCost.put(fresh.get(i), freshCosts.get(i));
+            }
+            for (int i = 0; i < resumed.size(); i++) {
+                if (!resumedCosts.get(i).equals(freshCost.get(resumed.get(i)))) {
+                    throw new IllegalStateException("Resumed search from " + origin + " found the cost " + resumedCosts.get(i)
+                            + " for " + resumed.get(i) + ", a new search " + freshCost.get(resumed.get(i)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the neighbor searches of a {@link PathStore} that resume the suspended searches of earlier calls with the
+     * same searches of a store without suspended searches. Both stores are created with the configuration of the
+     * routing, then the neighbors of a part of the materials are searched. The second search of all materials with an
+     * unlimited amount of neighbors contains the areas of the first search, so the first store resumes them. Both
+     * stores have to find the same costs for every material.
+     */
+    private void checkStoreResume() {
+        int n = world.getN();
+        PathStore.Config config = new PathStore.Config(size -> 5 + size / 2, RoutingStrategy.BundleStrategy.NEIGHBOR_LIMIT);
+        PathStore.Config seasonConfig = new PathStore.Config(size -> size * 2, RoutingStrategy.BundleStrategy.NEIGHBOR_LIMIT);
+        PathStore.Config unlimitedConfig = new PathStore.Config(size -> size * 2, Integer.MAX_VALUE);
+        Stopwatch watch = Stopwatch.createStarted();
+        PathStore resumed = new PathStore(env, config);
+        PathStore fresh = new PathStore(env, config);
+        // Materials in one quarter of the field, the areas of their searches only cover a part of the field
+        List<Point> part = new ArrayList<>();
+        for (Point pos : materials) {
+            if (pos.getX() < n / 2 && pos.getY() < n / 2) {
+                part.add(pos);
+            }
+        }
+        resumed.searchNeighbors(part, seasonConfig);
+        fresh.searchNeighbors(part, seasonConfig);
+        fresh.clearFrontiers();
+        Map<Point, List<Path>> resumedNeighbors = resumed.searchNeighbors(materials, unlimitedConfig);
+        Map<Point, List<Path>> freshNeighbors = fresh.searchNeighbors(materials, unlimitedConfig);
+        for (Point pos : materials) {
+            List<Integer> resumedCosts = sortedCosts(resumedNeighbors.get(pos));
+            List<Integer> freshCosts = sortedCosts(freshNeighbors.get(pos));
+            if (!resumedCosts.equals(freshCosts)) {
+                throw new IllegalStateException("Resumed store search from " + pos + " found the costs " + resumedCosts + ", a new search " + freshCosts);
+            }
+        }
+        Log.info(String.format("Store resume: %d materials OK (%s)", materials.size(), watch.stop()));
+    }
+
+    private static List<Integer> sortedCosts(List<Path> paths) {
+        List<Integer> costs = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            costs.add(path.getTimeCost());
+        }
+        Collections.sort(costs);
+        return costs;
+    }
+
+    /**
+     * Compares the searches on paths across a large field, whose costs are far bigger than on the usual fields. The
+     * dijkstra search, the A* search, the bidirectional search and the search of the whole field have to find the same
+     * cost.
+     */
+    private static void checkLargeWorld() {
+        Stopwatch watch = Stopwatch.createStarted();
+        World world = new World(LARGE_WORLD_SIZE);
+        PathCreator creator = new Environment(world, world.getRobot(), world.getFactory()).getCreator();
+        int last = LARGE_WORLD_SIZE - 1;
+        Point[][] pairs = {
+                {new Point(0, 0), new Point(last, last)},
+                {new Point(last, 0), new Point(0, last)},
+                {creator.getFactoryPos(), new Point(0, 0)},
+                {creator.getFactoryPos(), new Point(last, last)},
+        };
+        for (Point[] pair : pairs) {
+            Point from = pair[0];
+            Point to = pair[1];
+            Path expected = creator.findPath(from, to::equals);
+            if (expected == null) {
+                throw new IllegalStateException("Dijkstra search found no path from " + from + " to " + to);
+            }
+            int expectedCost = expected.getTimeCost();
+            int aStarCost = creator.findPath(from, to).getTimeCost();
+            int bidirectionalCost = creator.findPathBidirectional(from, to).getTimeCost();
+            int allCost = creator.findAllCosts(from)[to.getY() * LARGE_WORLD_SIZE + to.getX()];
+            if (aStarCost != expectedCost || bidirectionalCost != expectedCost || allCost != expectedCost) {
+                throw new IllegalStateException(String.format("Costs from %s to %s differ, dijkstra %d, A* %d, bidirectional %d, whole field %d",
+                        from, to, expectedCost, aStarCost, bidirectionalCost, allCost));
+            }
+            Log.info(String.format("Large world: %s to %s with %d steps costs %d", from, to, expected.getStepCount(), expectedCost));
+        }
+        Log.info(String.format("Large world: %d pairs OK (%s)", pairs.length, watch.stop()));
+    }
+}
@@ -1,7 +1,10 @@
 import robot.World;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -12,52 +15,144 @@ import java.util.function.Supplier;
  * This is a very important dependency of this project. To take less time to find the many paths on the big field,
  * these paths on the nodes on the field are cached and reused to minimize the time that is needed to calculate these
  * paths.
+ * <p>
+ * The state of a search is stored in flat primitive arrays indexed by {@code y * N + x} instead of one object per
+ * position, paths are only created from these arrays if a destination is found.
+ * <p>
+ * All costs are compared unscaled. A path never visits a position twice, so its cost is at most the sum of all field
+ * times, which is checked on creation to be small enough that the keys of all searches fit into an int. With the
+ * generated field times this holds up to a size of about 16000.
+ * <p>
+ * The field data is copied on creation and never changed, each running search uses its own mutable search state. So the
+ * searches can be called by multiple threads at the same time, each thread gets the same results as a single thread.
+ * A search state needs about 33 bytes per cell of the field with the {@link IndexedHeap}, the first bidirectional search
+ * and the first tree add up to 40 bytes more. The states are pooled instead of kept per thread, so only as many states
+ * exist as searches run at the same time.
  */
 public class PathCreator {
+    /**
+     * Offsets of the four neighbors of a cell on the x-axis
+     */
+    static final int[] NEIGHBOR_X = {-1, 1, 0, 0};
+    /**
+     * Offsets of the four neighbors of a cell on the y-axis
+     */
+    static final int[] NEIGHBOR_Y = {0, 0, -1, 1};
+    /**
+     * Direction the robot has to move to reach the neighbor
+     */
+    static final Direction[] NEIGHBOR_DIRECTION = {Direction.LEFT, Direction.RIGHT, Direction.UP, Direction.DOWN};
+    /**
+     * Generation of the last path search of {@link #findPath(Position, Predicate)}, the {@link RobotUI} only shows the
+     * cells of this generation
+     */
+    public static volatile int lastGeneration = 0;
+
     private final World world;
-    public static int lastGeneration = 0;
-    private final int costMultiplier;
     /**
-     * Cached nodes that are used to calculate the cost of each step.
+     * Size of the field
+     */
+    private final int n;
+    /**
+     * Time of each field, copied from the world so the searches don't have to go through the nested arrays.
      */
-    private final Node[][] cachedNodes;
+    private final int[] times;
     /**
      * Position of the factory
      */
     private final Point factoryPos;
     /**
-     * Used so we don't have to allocate the memory every time
+     * Smallest time of all fields, used by the heuristic of the A* search
+     */
+    private final int minFieldTime;
+    private final SearchQueue.Type queueType;
+    /**
+     * Search states that are not used by a running search. At most {@link Environment#PATH_THREADS} states are kept,
+     * the others are released after their search.
      */
-    private final MutablePoint cachedPos;
-    public int generation;
+    private final Deque<Search> idleSearches = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    /**
+     * Counts the path searches, independent of the search states, which have their own generations
+     */
+    private final AtomicInteger pathGeneration = new AtomicInteger();
+    /**
+     * Created on the first use, because a full search of the field is needed for each landmark
+     */
+    private volatile Landmarks landmarks;
+    private volatile PathHierarchy hierarchy;
 
     public PathCreator(Environment env, Point factoryPos) {
+        this(env, factoryPos, Environment.SEARCH_QUEUE);
+    }
+
+    /**
+     * @param queueType Implementation of the queue that is used by the searches.
+     */
+    public PathCreator(Environment env, Point factoryPos, SearchQueue.Type queueType) {
         this.world = env.getWorld();
-        this.costMultiplier = world.getN() * world.getN();
-        this.cachedNodes = new Node[world.getN()][world.getN()];
+        this.n = world.getN();
+        this.times = new int[n * n];
+        int minTime = Integer.MAX_VALUE;
+        long totalTime = 0;
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                times[y * n + x] = world.getFieldTime(x, y);
+                minTime = Math.min(minTime, times[y * n + x]);
+                totalTime += times[y * n + x];
+            }
+        }
+        // A* keys and the key sum of the bidirectional search can be up to twice the cost of a path
+        if (totalTime > Integer.MAX_VALUE / 2) {
+            throw new IllegalStateException("Sum of the field times " + totalTime + " is too big for the search keys, at most "
+                    + Integer.MAX_VALUE / 2 + " is supported");
+        }
+        this.minFieldTime = minTime;
         this.factoryPos = factoryPos;
-        this.cachedPos = new MutablePoint();
+        this.queueType = queueType;
     }
 
-    private Node getOriginNode(Point point) {
-        return getNode(point, null, false);
+    /**
+     * Runs the action with an unused search state, which is only used by this thread until the action returns.
+     */
+    private <T> T withSearch(Function<Search, T> action) {
+        Search search = idleSearches.pollFirst();
+        if (search == null) {
+            search = new Search();
+        } else {
+            idleCount.decrementAndGet();
+        }
+        try {
+            return action.apply(search);
+        } finally {
+            // The last used state is reused first, so its arrays are most likely still in the cache
+            if (idleCount.incrementAndGet() <= Environment.PATH_THREADS) {
+                idleSearches.offerFirst(search);
+            } else {
+                idleCount.decrementAndGet();
+            }
+        }
     }
 
-    private Node getNode(Position point, Node root, boolean change) {
-        Node cached = cachedNodes[point.getY()][point.getX()];
-        if (cached == null) {
-            int time = point.getTime(world);
+    /**
+     * Index of the given position in the search arrays.
+     */
+    private int indexOf(Position pos) {
+        return pos.getY() * n + pos.getX();
+    }
 
-            cached = new Node(point.toImmutable(), time, costMultiplier);
-            cachedNodes[point.getY()][point.getX()] = cached;
-        }
-        // Was already called by other root this run, only update if new root is better
-        if (change) {
-            cached.tryUpdate(root);
-        } else {
-            cached.init(root);
+    /**
+     * Index of the neighbor of the cell, -1 if the neighbor is outside the field.
+     *
+     * @param i Index of the neighbor in {@link #NEIGHBOR_X} and {@link #NEIGHBOR_Y}
+     */
+    private int neighborIndex(int x, int y, int i) {
+        int neighborX = x + NEIGHBOR_X[i];
+        int neighborY = y + NEIGHBOR_Y[i];
+        if (neighborX < 0 || neighborX >= n || neighborY < 0 || neighborY >= n) {
+            return -1;
         }
-        return cached;
+        return neighborY * n + neighborX;
     }
 
 //    public static final int CLOSED_FLAG = 1 << 0;
@@ -97,69 +192,9 @@ public class PathCreator {
 //        return (byte) (value | (state << 2) & COUNT_VALUE);
 //    }
 
-    /**
-     * Tries to find the shortest path to one or more destinations using the dijkstra algorithm.
-     *
-     * @param <T>           The type of the returned type
-     * @param startPoint    Start position of the graph
-     * @param isDestination Tests if the given position is a valid destination.
-     * @param validNeighbor Test if the given position is a valid neighbor node. Mostly used to limit the amount of nodes
-     *                      which are visited per search.
-     * @param consumePath   Called after a destination was found. The returned value will be returned by the function.
-     *                      If null is returned, the search will continue and this method will be called again after the
-     *                      next valid position was found.
-     *                      If nothing ever gets returned the search will end if there are no more valid nodes to visit.
-     * @param defaultValue  The value that will be returned if the search ends with no valid destination
-     * @return The value returned by the consumePath function if one was supplied.
-     */
-    private  <T> T findPath(
-            Position startPoint,
-            Predicate<Point> isDestination,
-            Predicate<Position> validNeighbor,
-            Function<Path, T> consumePath,
-            Supplier<T> defaultValue
-    ) {
-        PriorityQueue<Node> open = new PriorityQueue<>(world.getN() / 4);
-        boolean[][] inQueue = new boolean[world.getN()][world.getN()];
-        boolean[][] closed = new boolean[world.getN()][world.getN()];
-        Node origin = getOriginNode(startPoint.toImmutable());
-        open.add(origin);
-        while (!open.isEmpty()) {
-            Node node = open.poll();
-            if (node == null) {
-                throw new IllegalStateException();
-            }
-            Point point = node.getPoint();
-            if (isDestination.test(point)) {
-                T result = consumePath.apply(createPath(node));
-                if (result != null) {
-                    return result;
-                }
-            }
-            Point pos = node.getPoint();
-            // Check all neighbors of the current node
-            for (Direction dir : Direction.DIRECTIONS) {
-                Position neighborPos = cachedPos.set(pos, dir);
-                if (!neighborPos.checkBounds(world.getN()) || closed[neighborPos.getY()][neighborPos.getX()]) {
-                    continue;
-                }
-                if (validNeighbor != null && !validNeighbor.test(neighborPos)) {
-                    continue;
-                }
-                // If the node is already in the queue and not closed update the cost value
-                boolean alreadyInQueue = inQueue[neighborPos.getY()][neighborPos.getX()];
-                Node neighborNode = getNode(neighborPos, node, alreadyInQueue);
-                if (alreadyInQueue) {
-                    // The queue only updates the entry position in the data structure if the object is remove and added
-                    // again
-                    open.remove(neighborNode);
-                }
-                open.add(neighborNode);
-                inQueue[neighborPos.getY()][neighborPos.getX()] = true;
-            }
-            closed[point.getY()][point.getX()] = true;
-        }
-        return defaultValue.get();
+
+    public Point getFactoryPos() {
+        return factoryPos;
     }
 
     /**
@@ -181,24 +216,142 @@ public class PathCreator {
      *
      * @return A list of all found paths with a size from zero, if no paths were found, up to the limit.
      */
-    public List<Path> createPaths(Position startPoint, Predicate<Point> isDestination, int limit, int distanceLimit) {
+    public List<Path> createPaths(Position startPoint, Predicate<Position> isDestination, int limit, int distanceLimit) {
         List<Path> paths = new ArrayList<>();
-        findPath(startPoint, isDestination, neighborPos -> neighborPos.checkBounds(startPoint, distanceLimit), p -> {
+        return withSearch(search -> search.findPath(startPoint, isDestination, neighborPos -> neighborPos.checkBounds(startPoint, distanceLimit), p -> {
             paths.add(p);
             return paths.size() >= limit ? paths : null;
-        }, () -> paths);
-        return paths;
+        }, () -> paths, null));
     }
 
-    public List<Path> createPaths(Position startPoint, Predicate<Point> isDestination, Collection<Point> destinations, int limit, int expansionDivisor) {
+    public List<Path> createPaths(Position startPoint, Predicate<Position> isDestination, Collection<Point> destinations, int limit, int expansionDivisor) {
         int expansion = 5 + world.getN() / expansionDivisor;
         Bounds bounds = Bounds.create(world, expansion, destinations);
         List<Path> paths = new ArrayList<>();
-        findPath(startPoint, isDestination, bounds::contains, p -> {
+        return withSearch(search -> search.findPath(startPoint, isDestination, bounds::contains, p -> {
             paths.add(p);
             return paths.size() >= limit ? paths : null;
-        }, () -> paths);
-        return paths;
+        }, () -> paths, null));
+    }
+
+    /**
+     * Searches the cost to all materials from the factory as the origin point, without creating the paths.
+     *
+     * @param consumer Called with every found material and the cost to reach it.
+     */
+    public void findCostsToMaterial(CostConsumer consumer) {
+        findCosts(factoryPos, p -> p.hasMaterials(world), world.getN() * 2, world.getN(), consumer);
+    }
+
+    /**
+     * Searches the cost to as many destinations as the limit parameter allows, without creating the paths. The
+     * destinations are found in the same order as by {@link #createPaths(Position, Predicate, int, int)}.
+     *
+     * @param startPoint    Origin of the search
+     * @param isDestination Tests if the given position is a valid destination.
+     * @param limit         Limits the amount of destinations, stops the search if this limit is reached.
+     * @param distanceLimit Limits the distance the algorithm searches for possible path nodes.
+     * @param consumer      Called with every found destination and the cost to reach it.
+     * @return The amount of found destinations.
+     */
+    public int findCosts(Position startPoint, Predicate<Position> isDestination, int limit, int distanceLimit, CostConsumer consumer) {
+        return withSearch(search -> search.findCosts(startPoint, isDestination, neighborPos -> neighborPos.checkBounds(startPoint, distanceLimit), limit, consumer));
+    }
+
+    /**
+     * Searches the cost to as many destinations as the limit parameter allows, without creating the paths. The
+     * destinations are found in the same order as by {@link #createPaths(Position, Predicate, Collection, int, int)}.
+     *
+     * @return The amount of found destinations.
+     */
+    public int findCosts(Position startPoint, Predicate<Position> isDestination, Collection<Point> destinations, int limit, int expansionDivisor, CostConsumer consumer) {
+        int expansion = 5 + world.getN() / expansionDivisor;
+        Bounds bounds = Bounds.create(world, expansion, destinations);
+        return withSearch(search -> search.findCosts(startPoint, isDestination, bounds::contains, limit, consumer));
+    }
+
+    /**
+     * Creates an empty, resumable search state for the given origin, see {@link Frontier}.
+     */
+    public Frontier createFrontier(Position origin) {
+        return new Frontier(indexOf(origin));
+    }
+
+    /**
+     * Same as {@link #findCosts(Position, Predicate, int, int, CostConsumer)}, but continues the suspended search of the
+     * frontier if its area is contained in the new search area.
+     */
+    public int findCosts(Frontier frontier, Predicate<Position> isDestination, int limit, int distanceLimit, CostConsumer consumer) {
+        Bounds bounds = Bounds.around(world, new Point(frontier.origin % n, frontier.origin / n), distanceLimit);
+        return withSearch(search -> search.findCosts(frontier, isDestination, bounds, limit, consumer));
+    }
+
+    /**
+     * Same as {@link #findCosts(Position, Predicate, Collection, int, int, CostConsumer)}, but continues the suspended
+     * search of the frontier if its area is contained in the new search area.
+     */
+    public int findCosts(Frontier frontier, Predicate<Position> isDestination, Collection<Point> destinations, int limit, int expansionDivisor, CostConsumer consumer) {
+        int expansion = 5 + world.getN() / expansionDivisor;
+        Bounds bounds = Bounds.create(world, expansion, destinations);
+        return withSearch(search -> search.findCosts(frontier, isDestination, bounds, limit, consumer));
+    }
+
+    /**
+     * Searches all materials from the factory as the origin point, like {@link #findCostsToMaterial(CostConsumer)},
+     * and keeps the paths to them as a shortest path tree.
+     */
+    public PathTree findTreeToMaterial() {
+        return withSearch(search -> {
+            List<Point> found = new ArrayList<>();
+            search.findCosts(factoryPos, p -> p.hasMaterials(world), neighborPos -> neighborPos.checkBounds(factoryPos, world.getN()),
+                    world.getN() * 2, (destination, cost) -> found.add(destination));
+            return search.createTree(factoryPos, found);
+        });
+    }
+
+    /**
+     * Same as {@link #findCosts(Frontier, Predicate, int, int, CostConsumer)}, but keeps the paths to the found
+     * destinations as a shortest path tree.
+     */
+    public PathTree findTree(Frontier frontier, Predicate<Position> isDestination, int limit, int distanceLimit) {
+        Point origin = new Point(frontier.origin % n, frontier.origin / n);
+        return findTree(frontier, isDestination, Bounds.around(world, origin, distanceLimit), limit);
+    }
+
+    /**
+     * Same as {@link #findCosts(Frontier, Predicate, Collection, int, int, CostConsumer)}, but keeps the paths to the
+     * found destinations as a shortest path tree.
+     */
+    public PathTree findTree(Frontier frontier, Predicate<Position> isDestination, Collection<Point> destinations, int limit, int expansionDivisor) {
+        int expansion = 5 + world.getN() / expansionDivisor;
+        return findTree(frontier, isDestination, Bounds.create(world, expansion, destinations), limit);
+    }
+
+    private PathTree findTree(Frontier frontier, Predicate<Position> isDestination, Bounds bounds, int limit) {
+        return withSearch(search -> {
+            List<Point> found = new ArrayList<>();
+            search.findCosts(frontier, isDestination, bounds, limit, (destination, cost) -> found.add(destination));
+            return search.createTree(new Point(frontier.origin % n, frontier.origin / n), found);
+        });
+    }
+
+    /**
+     * Cell from which the given cell was reached by moving in the given direction.
+     */
+    private int parentOf(int cell, byte dir) {
+        for (int i = 0; i < NEIGHBOR_DIRECTION.length; i++) {
+            if (NEIGHBOR_DIRECTION[i].ordinal() == dir) {
+                return cell - NEIGHBOR_Y[i] * n - NEIGHBOR_X[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Time that is needed to move onto the given position.
+     */
+    public int getTime(Position pos) {
+        return times[indexOf(pos)];
     }
 
     /**
@@ -209,100 +362,675 @@ public class PathCreator {
      *
      * @return The found path, {@code null} if none was found.
      */
-    public Path findPath(Position startPoint, Predicate<Point> isDestination) {
-        lastGeneration = ++generation;
-        return findPath(startPoint, isDestination, null, p -> p, () -> null);
+    public Path findPath(Position startPoint, Predicate<Position> isDestination) {
+        lastGeneration = pathGeneration.incrementAndGet();
+        return withSearch(search -> search.findPath(startPoint, isDestination, null, p -> p, () -> null, null));
     }
 
     /**
-     * Creates a path starting at the given node and traversing the parent nodes until a node is found where the parent
-     * is null. This position is the origin.
+     * Tries to find the path from the origin to a single known target. Because the target is known, the A* algorithm
+     * is used, which visits fewer nodes than the dijkstra algorithm but finds a path with the same cost.
+     *
+     * @param startPoint Origin of the path
+     * @param target     Destination of the path
+     *
+     * @return The found path, {@code null} if none was found.
      */
-    public Path createPath(Node node) {
-        List<Path.Step> steps = new ArrayList<>();
-        while (node != null) {
-            // Create steps starting on the destination
-            Path.Step step = node.toStep();
-            node = node.getRoot();
-            steps.add(step);
+    public Path findPath(Position startPoint, Point target) {
+        Heuristic heuristic = Heuristic.manhattan(target, target.getTime(world), minFieldTime);
+        Landmarks landmarks = getLandmarks();
+        if (landmarks != null) {
+            heuristic = heuristic.max(landmarks.createHeuristic(target));
         }
-        // Reverse steps, so they are in the right order and the first element is the origin
-        Collections.reverse(steps);
-        return new Path(steps.toArray(new Path.Step[0]));
+        return findPath(startPoint, target, heuristic);
     }
 
     /**
-     * Helper class which represents a position on the field. Used to store the cost of this position, which does not
-     * change in the lifetime of this program, and the accumulated cost of the current algorithm run.
+     * Tries to find the path from the origin to a single known target with the A* algorithm.
+     *
+     * @param startPoint Origin of the path
+     * @param target     Destination of the path
+     * @param heuristic  Admissible and consistent estimate of the remaining cost to the target
+     *
+     * @return The found path, {@code null} if none was found.
+     */
+    public Path findPath(Position startPoint, Point target, Heuristic heuristic) {
+        return withSearch(search -> search.findPath(startPoint, target::equals, null, p -> p, () -> null, heuristic));
+    }
+
+    /**
+     * Lower bounds of the time between two positions, created on the first call with the amount of landmarks defined
+     * by {@link Environment#LANDMARKS}. Fields of at least {@link Environment#HIERARCHY_MIN_SIZE} have no landmarks,
+     * they would need too much memory.
+     *
+     * @return The landmarks, null if they are disabled.
      */
-    private static class Node implements Comparable<Node> {
+    public Landmarks getLandmarks() {
+        if (Environment.LANDMARKS <= 0 || n >= Environment.HIERARCHY_MIN_SIZE) {
+            return null;
+        }
+        Landmarks result = landmarks;
+        if (result == null) {
+            synchronized (this) {
+                result = landmarks;
+                if (result == null) {
+                    result = new Landmarks(this, n, times, factoryPos, Environment.LANDMARKS);
+                    landmarks = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Abstract graph of the field for the path finding on very large fields, created on the first call with the
+     * settings of the {@link Environment}.
+     */
+    public PathHierarchy getHierarchy() {
+        PathHierarchy result = hierarchy;
+        if (result == null) {
+            synchronized (this) {
+                result = hierarchy;
+                if (result == null) {
+                    result = new PathHierarchy(this, world, times, Environment.HIERARCHY_BLOCK_SIZE,
+                            Environment.HIERARCHY_ENTRANCE_DISTANCE, Environment.PATH_THREADS);
+                    hierarchy = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Searches the time from the origin to every cell of the field. Big fields are searched by the parallel
+     * {@link DeltaStepping} if there are several path threads, small fields by the {@link FastSweeping}.
+     *
+     * @return Time to each cell by its index {@code y * N + x}, without the time of the origin
+     */
+    public int[] findAllCosts(Position origin) {
+        if (Environment.PATH_THREADS > 1 && n >= Environment.PARALLEL_SEARCH_MIN_SIZE) {
+            return createDeltaStepping().findCosts(indexOf(origin));
+        }
+        if (n < Environment.SWEEPING_MAX_SIZE) {
+            return new FastSweeping(n, times).findCosts(indexOf(origin));
+        }
+        return withSearch(search -> {
+            search.search(origin, p -> false, null, null, cell -> false);
+            return Arrays.copyOf(search.cost, n * n);
+        });
+    }
+
+    /**
+     * Parallel search over the whole field with the shared pool of the {@link Environment}, the buckets have half the
+     * width of the largest field time.
+     */
+    private DeltaStepping createDeltaStepping() {
+        return new DeltaStepping(n, times, BucketQueue.maxFieldTime(world) / 2, Environment.PATH_POOL);
+    }
+
+    /**
+     * Tries to find the path from the origin to a single known target with a bidirectional dijkstra search.
+     * <p>
+     * One search starts at the origin and one at the target, following the steps in reverse. Both searches only have
+     * to cover about half of the distance, so far less nodes are visited on big fields. The search ends if the sum of
+     * the smallest costs in both queues can't be lower than the best found connection anymore.
+     *
+     * @param startPoint Origin of the path
+     * @param target     Destination of the path
+     *
+     * @return The found path, {@code null} if none was found.
+     */
+    public Path findPathBidirectional(Position startPoint, Point target) {
+        return withSearch(search -> search.findPathBidirectional(indexOf(startPoint), indexOf(target)));
+    }
+
+    /**
+     * Mutable state of one running search. The state is reused by later searches, which reuse the same arrays.
+     */
+    private final class Search {
+        /**
+         * Queue of the nodes which are not visited yet, ordered by the cost to reach them. Reused by every search.
+         */
+        private final SearchQueue open = queueType.create(world);
+        /**
+         * Used so we don't have to allocate the memory every time
+         */
+        private final MutablePoint cachedPos = new MutablePoint();
+        /**
+         * Cost from the origin of the current search up to the cell, without the time of the origin.
+         */
+        private final int[] cost = new int[n * n];
         /**
-         * Position on the field
+         * Cell from which the cell was reached with the current cost, -1 for the origin.
          */
-        private final Point point;
+        private final int[] parent = new int[n * n];
+        /**
+         * Ordinal of the direction the robot has to move from the parent to reach the cell.
+         */
+        private final byte[] direction = new byte[n * n];
+        /**
+         * Generation of the search in which the cell was added to the queue.
+         */
+        private final int[] visited = new int[n * n];
+        /**
+         * Generation of the search in which the cell was closed.
+         */
+        private final int[] closed = new int[n * n];
+        /**
+         * Current search generation, every search increases this value. A cell is only visited or closed if its stamp
+         * equals this value, so the state of the previous search doesn't have to be cleared.
+         */
+        private int generation;
+        /**
+         * State of the backward search of the bidirectional search. The backward cost is the time from the cell to the
+         * target, the time of the cell itself is not included, because it is paid when entering the cell.
+         * <p>
+         * Only created on the first bidirectional search, so big fields don't pay the memory if it is never used.
+         */
+        private SearchQueue backwardOpen;
+        private int[] backwardCost;
+        private int[] backwardNext;
+        private int[] backwardVisited;
+        private int[] backwardClosed;
+        /**
+         * Node of the cell in the tree that is currently created, only valid if the stamp of the cell equals the
+         * current generation. Only created on the first tree.
+         */
+        private int[] treeNode;
+        private int[] treeStamp;
+
+        /**
+         * Starts a new search generation, which invalidates the visited and closed state of all cells.
+         */
+        private void nextGeneration() {
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                Arrays.fill(closed, 0);
+                if (backwardOpen != null) {
+                    Arrays.fill(backwardVisited, 0);
+                    Arrays.fill(backwardClosed, 0);
+                }
+                if (treeStamp != null) {
+                    Arrays.fill(treeStamp, 0);
+                }
+                generation = 1;
+            }
+            open.clear();
+        }
+
+        /**
+         * Adds the origin of a search to the queue.
+         */
+        private void addOrigin(int cell, Heuristic heuristic) {
+            cost[cell] = 0;
+            parent[cell] = -1;
+            visited[cell] = generation;
+            open.add(cell, getKey(cell, heuristic));
+        }
+
+        /**
+         * Key of the cell in the queue, the cost up to the cell plus the estimated remaining cost if a heuristic is used.
+         */
+        private int getKey(int cell, Heuristic heuristic) {
+            if (heuristic == null) {
+                return cost[cell];
+            }
+            return cost[cell] + heuristic.estimate(cell % n, cell / n);
+        }
+
+        /**
+         * Tries to find the shortest path to one or more destinations using the dijkstra algorithm.
+         *
+         * @param <T>           The type of the returned type
+         * @param startPoint    Start position of the graph
+         * @param isDestination Tests if the given position is a valid destination.
+         * @param validNeighbor Test if the given position is a valid neighbor node. Mostly used to limit the amount of nodes
+         *                      which are visited per search.
+         * @param consumePath   Called after a destination was found. The returned value will be returned by the function.
+         *                      If null is returned, the search will continue and this method will be called again after the
+         *                      next valid position was found.
+         *                      If nothing ever gets returned the search will end if there are no more valid nodes to visit.
+         * @param defaultValue  The value that will be returned if the search ends with no valid destination
+         * @param heuristic     Estimate of the remaining cost, turns the search into an A* search. If null the dijkstra
+         *                      algorithm is used.
+         * @return The value returned by the consumePath function if one was supplied.
+         */
+        private  <T> T findPath(
+                Position startPoint,
+                Predicate<Position> isDestination,
+                Predicate<Position> validNeighbor,
+                Function<Path, T> consumePath,
+                Supplier<T> defaultValue,
+                Heuristic heuristic
+        ) {
+            List<T> result = new ArrayList<>(1);
+            search(startPoint, isDestination, validNeighbor, heuristic, cell -> {
+                T value = consumePath.apply(createPath(cell));
+                if (value == null) {
+                    return false;
+                }
+                result.add(value);
+                return true;
+            });
+            return result.isEmpty() ? defaultValue.get() : result.get(0);
+        }
+
         /**
-         * Field cost
+         * Runs the search, the state of the visited cells can be read from the search arrays while the search is running.
+         *
+         * @param startPoint    Start position of the graph
+         * @param isDestination Tests if the given position is a valid destination.
+         * @param validNeighbor Test if the given position is a valid neighbor node, null if all nodes are valid.
+         * @param heuristic     Estimate of the remaining cost, null for the dijkstra algorithm.
+         * @param onDestination Called with the index of every found destination, the search ends if true is returned.
          */
-        private final int timeCost;
-        private final int m;
+        private void search(
+                Position startPoint,
+                Predicate<Position> isDestination,
+                Predicate<Position> validNeighbor,
+                Heuristic heuristic,
+                IntPredicate onDestination
+        ) {
+            nextGeneration();
+            addOrigin(indexOf(startPoint), heuristic);
+            expand(isDestination, validNeighbor, heuristic, onDestination, null);
+        }
+
         /**
-         * Current cost up to this position, starting from the origin
+         * Polls and expands the cells of the queue until the queue is empty or the search is ended by a destination.
+         *
+         * @param frontier Records the visited cells, so the search can be resumed later, null if the search is not
+         *                 resumable.
          */
-        private int g;
+        private void expand(
+                Predicate<Position> isDestination,
+                Predicate<Position> validNeighbor,
+                Heuristic heuristic,
+                IntPredicate onDestination,
+                Frontier frontier
+        ) {
+            while (!open.isEmpty()) {
+                int cell = open.poll();
+                closed[cell] = generation;
+                int x = cell % n;
+                int y = cell / n;
+                if (isDestination.test(cachedPos.set(x, y)) && onDestination.test(cell)) {
+                    return;
+                }
+                boolean blocked = false;
+                // Check all neighbors of the current node
+                for (int i = 0; i < NEIGHBOR_DIRECTION.length; i++) {
+                    int neighbor = neighborIndex(x, y, i);
+                    if (neighbor < 0 || closed[neighbor] == generation) {
+                        continue;
+                    }
+                    if (validNeighbor != null && !validNeighbor.test(cachedPos.set(x + NEIGHBOR_X[i], y + NEIGHBOR_Y[i]))) {
+                        blocked = true;
+                        continue;
+                    }
+                    relax(cell, neighbor, i, heuristic, frontier);
+                }
+                // A cell only counts as settled once all of its neighbors are relaxed
+                if (frontier != null) {
+                    if (blocked) {
+                        frontier.blocked = MathUtil.append(frontier.blocked, frontier.blockedCount++, cell);
+                    }
+                    frontier.settled = MathUtil.append(frontier.settled, frontier.settledCount++, cell);
+                }
+            }
+        }
+
         /**
-         * Root object, used to create the path if a destination is found.
+         * Updates the cost of the neighbor if it can be reached cheaper from the given cell.
          */
-        private Node root;
+        private void relax(int cell, int neighbor, int neighborIdx, Heuristic heuristic, Frontier frontier) {
+            int neighborCost = cost[cell] + times[neighbor];
+            // If the node is already in the queue and not closed update the cost value if the new one is better
+            if (visited[neighbor] != generation) {
+                visited[neighbor] = generation;
+                setParent(neighbor, cell, neighborCost, neighborIdx);
+                open.add(neighbor, getKey(neighbor, heuristic));
+                if (frontier != null) {
+                    frontier.cells = MathUtil.append(frontier.cells, frontier.size++, neighbor);
+                }
+            } else {
+                if (neighborCost < cost[neighbor]) {
+                    setParent(neighbor, cell, neighborCost, neighborIdx);
+                }
+                open.update(neighbor, getKey(neighbor, heuristic));
+            }
+        }
 
-        public Node(Point point, int timeCost, int m) {
-            this.point = point;
-            this.timeCost = timeCost;
-            this.m = m;
+        private void setParent(int cell, int root, int cellCost, int neighbor) {
+            cost[cell] = cellCost;
+            parent[cell] = root;
+            direction[cell] = (byte) NEIGHBOR_DIRECTION[neighbor].ordinal();
         }
 
-        public void init(Node root) {
-            this.root = root;
-            this.g = (root != null ? root.g : 0) + timeCost;
+        private int findCosts(Position startPoint, Predicate<Position> isDestination, Predicate<Position> validNeighbor, int limit, CostConsumer consumer) {
+            final int[] found = {0};
+            search(startPoint, isDestination, validNeighbor, null, cell -> {
+                consumer.accept(new Point(cell % n, cell / n), cost[cell]);
+                return ++found[0] >= limit;
+            });
+            return found[0];
         }
 
-        public void tryUpdate(Node root) {
-            if (root.g + timeCost >= g) {
-                return;
+        private int findCosts(Frontier frontier, Predicate<Position> isDestination, Bounds bounds, int limit, CostConsumer consumer) {
+            final int[] found = {0};
+            IntPredicate onDestination = cell -> {
+                consumer.accept(new Point(cell % n, cell / n), cost[cell]);
+                return ++found[0] >= limit;
+            };
+            if (frontier.bounds != null && bounds.contains(frontier.bounds)) {
+                resume(frontier, isDestination, bounds, onDestination);
+            } else {
+                frontier.reset();
+                nextGeneration();
+                addOrigin(frontier.origin, null);
+                frontier.cells = MathUtil.append(frontier.cells, frontier.size++, frontier.origin);
+                expand(isDestination, bounds::contains, null, onDestination, frontier);
             }
-            this.g = root.g + timeCost;
-            this.root = root;
+            frontier.suspend(bounds, cost, direction);
+            return found[0];
         }
 
-        public Node getRoot() {
-            return root;
+        /**
+         * Creates the shortest path tree of the last search, which only contains the paths to the given destinations.
+         */
+        private PathTree createTree(Point origin, List<Point> destinations) {
+            if (treeNode == null) {
+                treeNode = new int[n * n];
+                treeStamp = new int[n * n];
+            }
+            int root = indexOf(origin);
+            int[] parents = {-1};
+            byte[] directions = {0};
+            int size = 1;
+            treeStamp[root] = generation;
+            treeNode[root] = 0;
+            int[] destinationNodes = new int[destinations.size()];
+            int[] costs = new int[destinations.size()];
+            for (int i = 0; i < destinations.size(); i++) {
+                int destination = indexOf(destinations.get(i));
+                // Add the cells of the path until a cell is reached which is already part of the tree
+                int child = -1;
+                int cell = destination;
+                for (; treeStamp[cell] != generation; cell = parent[cell]) {
+                    treeStamp[cell] = generation;
+                    treeNode[cell] = size;
+                    parents = MathUtil.append(parents, size, -1);
+                    if (size == directions.length) {
+                        directions = Arrays.copyOf(directions, size * 2);
+                    }
+                    directions[size] = direction[cell];
+                    if (child >= 0) {
+                        parents[child] = size;
+                    }
+                    child = size++;
+                }
+                if (child >= 0) {
+                    parents[child] = treeNode[cell];
+                }
+                destinationNodes[i] = treeNode[destination];
+                costs[i] = cost[destination];
+            }
+            return new PathTree(world, origin, Arrays.copyOf(parents, size), Arrays.copyOf(directions, size),
+                    destinations.toArray(new Point[0]), destinationNodes, costs);
         }
 
-        public int getCost() {
-            return (g) * m;
+        /**
+         * Restores the state of a suspended search and continues it with a bigger area.
+         * <p>
+         * The cells outside the old area are reached over the settled cells which had a neighbor outside the old area.
+         * Only the settled cells which are cheaper than the cheapest of these new cells keep their cost, the others are
+         * added to the queue again, so they are settled in the right order. The kept cells are reported in the order they
+         * were settled before the search continues with the queue.
+         */
+        private void resume(Frontier frontier, Predicate<Position> isDestination, Bounds bounds, IntPredicate onDestination) {
+            nextGeneration();
+            Bounds oldBounds = frontier.bounds;
+            for (int i = 0; i < frontier.size; i++) {
+                int cell = frontier.cells[i];
+                visited[cell] = generation;
+                cost[cell] = frontier.costs[i];
+                direction[cell] = frontier.directions[i];
+                parent[cell] = cell == frontier.origin ? -1 : parentOf(cell, frontier.directions[i]);
+            }
+            for (int i = 0; i < frontier.settledCount; i++) {
+                closed[frontier.settled[i]] = generation;
+            }
+            for (int i = 0; i < frontier.size; i++) {
+                int cell = frontier.cells[i];
+                if (closed[cell] != generation) {
+                    open.add(cell, cost[cell]);
+                }
+            }
+            // Relax the neighbors that were outside the old area
+            int minNewCost = Integer.MAX_VALUE;
+            for (int i = 0; i < frontier.blockedCount; i++) {
+                int cell = frontier.blocked[i];
+                int x = cell % n;
+                int y = cell / n;
+                for (int j = 0; j < NEIGHBOR_DIRECTION.length; j++) {
+                    int neighbor = neighborIndex(x, y, j);
+                    if (neighbor < 0 || closed[neighbor] == generation) {
+                        continue;
+                    }
+                    cachedPos.set(x + NEIGHBOR_X[j], y + NEIGHBOR_Y[j]);
+                    if (oldBounds.contains(cachedPos) || !bounds.contains(cachedPos)) {
+                        continue;
+                    }
+                    minNewCost = Math.min(minNewCost, cost[cell] + times[neighbor]);
+                    relax(cell, neighbor, j, null, frontier);
+                }
+            }
+            // Settled cells that could be reached cheaper over the new area are not settled anymore
+            int kept = 0;
+            while (kept < frontier.settledCount && cost[frontier.settled[kept]] <= minNewCost) {
+                kept++;
+            }
+            for (int i = kept; i < frontier.settledCount; i++) {
+                int cell = frontier.settled[i];
+                closed[cell] = 0;
+                open.add(cell, cost[cell]);
+            }
+            frontier.settledCount = kept;
+            for (int i = 0; i < kept; i++) {
+                int cell = frontier.settled[i];
+                if (isDestination.test(cachedPos.set(cell % n, cell / n)) && onDestination.test(cell)) {
+                    return;
+                }
+            }
+            expand(isDestination, bounds::contains, null, onDestination, frontier);
         }
 
-        public int getTimeCost() {
-            return timeCost;
+        private Path findPathBidirectional(int start, int end) {
+            if (backwardOpen == null) {
+                backwardOpen = queueType.create(world);
+                backwardCost = new int[n * n];
+                backwardNext = new int[n * n];
+                backwardVisited = new int[n * n];
+                backwardClosed = new int[n * n];
+            }
+            nextGeneration();
+            backwardOpen.clear();
+            addOrigin(start, null);
+            backwardCost[end] = 0;
+            backwardNext[end] = -1;
+            backwardVisited[end] = generation;
+            backwardOpen.add(end, 0);
+            int best = start == end ? 0 : Integer.MAX_VALUE;
+            int meeting = start == end ? start : -1;
+            while (!open.isEmpty() && !backwardOpen.isEmpty()) {
+                int forwardKey = open.peekKey();
+                int backwardKey = backwardOpen.peekKey();
+                if (best != Integer.MAX_VALUE && forwardKey + backwardKey >= best) {
+                    break;
+                }
+                if (forwardKey <= backwardKey) {
+                    int cell = open.poll();
+                    closed[cell] = generation;
+                    int x = cell % n;
+                    int y = cell / n;
+                    for (int i = 0; i < NEIGHBOR_DIRECTION.length; i++) {
+                        int neighbor = neighborIndex(x, y, i);
+                        if (neighbor < 0 || closed[neighbor] == generation) {
+                            continue;
+                        }
+                        int neighborCost = cost[cell] + times[neighbor];
+                        if (visited[neighbor] != generation) {
+                            visited[neighbor] = generation;
+                            open.add(neighbor, neighborCost);
+                        } else if (neighborCost < cost[neighbor]) {
+                            open.decreaseKey(neighbor, neighborCost);
+                        } else {
+                            continue;
+                        }
+                        setParent(neighbor, cell, neighborCost, i);
+                        if (backwardVisited[neighbor] == generation && neighborCost + backwardCost[neighbor] < best) {
+                            best = neighborCost + backwardCost[neighbor];
+                            meeting = neighbor;
+                        }
+                    }
+                } else {
+                    int cell = backwardOpen.poll();
+                    backwardClosed[cell] = generation;
+                    int x = cell % n;
+                    int y = cell / n;
+                    // Every step onto this cell costs the time of the cell, independent of the previous cell
+                    int neighborCost = backwardCost[cell] + times[cell];
+                    for (int i = 0; i < NEIGHBOR_DIRECTION.length; i++) {
+                        int neighbor = neighborIndex(x, y, i);
+                        if (neighbor < 0 || backwardClosed[neighbor] == generation) {
+                            continue;
+                        }
+                        if (backwardVisited[neighbor] != generation) {
+                            backwardVisited[neighbor] = generation;
+                            backwardOpen.add(neighbor, neighborCost);
+                        } else if (neighborCost < backwardCost[neighbor]) {
+                            backwardOpen.decreaseKey(neighbor, neighborCost);
+                        } else {
+                            continue;
+                        }
+                        backwardCost[neighbor] = neighborCost;
+                        backwardNext[neighbor] = cell;
+                        if (visited[neighbor] == generation && neighborCost + cost[neighbor] < best) {
+                            best = neighborCost + cost[neighbor];
+                            meeting = neighbor;
+                        }
+                    }
+                }
+            }
+            if (meeting < 0) {
+                return null;
+            }
+            // Continue the forward search tree with the steps of the backward search, so the path can be created from the
+            // parents of the target
+            for (int cell = meeting, next = backwardNext[cell]; next >= 0; cell = next, next = backwardNext[next]) {
+                parent[next] = cell;
+                direction[next] = (byte) cachedPos.set(cell % n, cell / n).dirTo(new Point(next % n, next / n)).ordinal();
+            }
+            return createPath(end);
         }
 
-        public Point getPoint() {
-            return point;
+        /**
+         * Creates a path starting at the given cell and traversing the parent cells until a cell is found where the parent
+         * is -1. This position is the origin.
+         */
+        private Path createPath(int cell) {
+            int length = 0;
+            for (int current = cell; current >= 0; current = parent[current]) {
+                length++;
+            }
+            // Create steps starting on the destination, so they are in the right order and the first element is the origin
+            byte[] directions = new byte[length];
+            int[] stepTimes = new int[length];
+            int origin = cell;
+            for (int current = cell, i = length - 1; current >= 0; current = parent[current], i--) {
+                directions[i] = direction[current];
+                stepTimes[i] = times[current];
+                origin = current;
+            }
+            return new Path(new PackedSteps(new Point(origin % n, origin / n), new Point(cell % n, cell / n), directions, stepTimes));
         }
+    }
+
+    /**
+     * Receives the results of a search which only calculates the costs.
+     */
+    @FunctionalInterface
+    public interface CostConsumer {
+        /**
+         * Called for every found destination.
+         *
+         * @param destination Position of the destination
+         * @param cost        Time from the origin to the destination, without the time of the origin
+         */
+        void accept(Point destination, int cost);
+    }
 
-        @Override
-        public int compareTo(Node o) {
-            return getCost() - o.getCost();
+    /**
+     * Suspended dijkstra search of one origin, which can be resumed by a later search of the same origin in a bigger
+     * area, so the cells that were already searched don't have to be searched again.
+     * <p>
+     * The state is copied out of the search arrays after every search, because these arrays are reused by all
+     * searches. The parent of a cell is not stored, it is restored from the direction. A frontier must not be used by
+     * two threads at the same time.
+     */
+    public static final class Frontier {
+        private final int origin;
+        /**
+         * Area of the last search, null if the frontier was not searched yet.
+         */
+        private Bounds bounds;
+        /**
+         * All visited cells with their cost and direction.
+         */
+        private int size;
+        private int[] cells = new int[0];
+        private int[] costs = new int[0];
+        private byte[] directions = new byte[0];
+        /**
+         * Settled cells, in the order they were settled.
+         */
+        private int settledCount;
+        private int[] settled = new int[0];
+        /**
+         * Settled cells that have a neighbor outside the search area. May contain duplicates.
+         */
+        private int blockedCount;
+        private int[] blocked = new int[0];
+
+        private Frontier(int origin) {
+            this.origin = origin;
         }
 
         /**
-         * Converts this node to a path step.
+         * Amount of cells that are stored by this frontier.
          */
-        public Path.Step toStep() {
-            // Destination
-            if (root == null) {
-                return new Path.Step(point, null, getTimeCost());
+        public int getCellCount() {
+            return size;
+        }
+
+        private void reset() {
+            bounds = null;
+            size = 0;
+            settledCount = 0;
+            blockedCount = 0;
+        }
+
+        private void suspend(Bounds searchBounds, int[] cost, byte[] direction) {
+            bounds = searchBounds;
+            if (costs.length < size) {
+                costs = new int[cells.length];
+                directions = new byte[cells.length];
+            }
+            for (int i = 0; i < size; i++) {
+                costs[i] = cost[cells[i]];
+                directions[i] = direction[cells[i]];
             }
-            return new Path.Step(point, root.getPoint().dirTo(point), getTimeCost());
         }
     }
 }
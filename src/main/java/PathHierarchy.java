@@ -0,0 +1,509 @@
+import robot.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Hierarchical path finding (HPA*) for very large fields.
+ * <p>
+ * The field is split into square blocks. On the border between two blocks a pair of cells, one on each side, is used
+ * as an entrance every few cells. The cells of the entrances are the nodes of an abstract graph. The nodes of one block are connected with the time of the shortest path inside the block, which is searched once on
+ * creation, and the two cells of an entrance are connected with the time of the single step over the border. A query
+ * searches the abstract graph first, which only has a few nodes per block, and only refines the chosen corridor to the
+ * steps of the path if the path is driven.
+ * <p>
+ * A path can only cross the border of a block at an entrance, so the time of a found path can be bigger than the time
+ * of the shortest path. This overhead is measured by the {@link PathBenchmark}.
+ */
+public class PathHierarchy {
+    private final PathCreator creator;
+    private final int n;
+    /**
+     * Time of each field by its cell index, used for the steps over the border of an entrance and to reverse the time of
+     * a path inside the target block
+     */
+    private final int[] times;
+    private final int blockSize;
+    /**
+     * Amount of blocks on each axis
+     */
+    private final int blocks;
+    /**
+     * Cell of each node, grouped by block and ascending in each block
+     */
+    private final int[] nodeCells;
+    /**
+     * Index of the first node of each block, the last entry is the amount of nodes
+     */
+    private final int[] blockStart;
+    /**
+     * Start of the time matrix of each block in {@link #blockTimes}
+     */
+    private final int[] blockOffset;
+    /**
+     * Time of the shortest path inside the block between each pair of nodes of the block, row by row
+     */
+    private final int[] blockTimes;
+    /**
+     * Nodes on the other side of the border of each entrance, by the index in {@link #borderStart}
+     */
+    private final int[] borderStart;
+    private final int[] borderNodes;
+    private final int maxBlockNodes;
+    private final ThreadLocal<Query> queries;
+
+    /**
+     * @param times            Time of each field
+     * @param blockSize        Width and height of a block in cells
+     * @param entranceDistance Distance between two entrances on the border of a block
+     * @param threads          Amount of threads that search the times inside the blocks
+     */
+    public PathHierarchy(PathCreator creator, World world, int[] times, int blockSize, int entranceDistance, int threads) {
+        this.creator = creator;
+        this.n = world.getN();
+        this.times = times;
+        this.blockSize = blockSize;
+        this.blocks = (n + blockSize - 1) / blockSize;
+        // Block in the upper and cell in the lower bits, so sorting groups the cells by block
+        long[] keys = new long[16];
+        int keyCount = 0;
+        int[] pairs = new int[16];
+        int pairCount = 0;
+        for (int by = 0; by < blocks; by++) {
+            for (int bx = 0; bx < blocks; bx++) {
+                int startX = bx * blockSize;
+                int startY = by * blockSize;
+                int endX = Math.min(startX + blockSize, n) - 1;
+                int endY = Math.min(startY + blockSize, n) - 1;
+                // Borders to the right and to the bottom, the other borders belong to the neighboring blocks
+                for (int i = 0; bx + 1 < blocks && i < getEntranceCount(endY - startY + 1, entranceDistance); i++) {
+                    int y = startY + getEntranceOffset(endY - startY + 1, entranceDistance, i);
+                    int inside = y * n + endX;
+                    keys = MathUtil.append(keys, keyCount++, keyOf(inside));
+                    keys = MathUtil.append(keys, keyCount++, keyOf(inside + 1));
+                    pairs = MathUtil.append(pairs, pairCount++, inside);
+                }
+                for (int i = 0; by + 1 < blocks && i < getEntranceCount(endX - startX + 1, entranceDistance); i++) {
+                    int x = startX + getEntranceOffset(endX - startX + 1, entranceDistance, i);
+                    int inside = endY * n + x;
+                    keys = MathUtil.append(keys, keyCount++, keyOf(inside));
+                    keys = MathUtil.append(keys, keyCount++, keyOf(inside + n));
+                    pairs = MathUtil.append(pairs, pairCount++, -inside - 1);
+                }
+            }
+        }
+        Arrays.sort(keys, 0, keyCount);
+        int nodeCount = 0;
+        for (int i = 0; i < keyCount; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[nodeCount++] = keys[i];
+            }
+        }
+        this.nodeCells = new int[nodeCount];
+        this.blockStart = new int[blocks * blocks + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            nodeCells[i] = (int) keys[i];
+            blockStart[(int) (keys[i] >>> 32) + 1]++;
+        }
+        int largest = 0;
+        for (int i = 0; i < blocks * blocks; i++) {
+            largest = Math.max(largest, blockStart[i + 1]);
+            blockStart[i + 1] += blockStart[i];
+        }
+        this.maxBlockNodes = largest;
+        // Both directions of each entrance
+        int[] borderCount = new int[nodeCount + 1];
+        int[] borderFrom = new int[pairCount * 2];
+        int[] borderTo = new int[pairCount * 2];
+        for (int i = 0; i < pairCount; i++) {
+            int inside = pairs[i] >= 0 ? pairs[i] : -pairs[i] - 1;
+            int outside = pairs[i] >= 0 ? inside + 1 : inside + n;
+            borderFrom[i * 2] = getNode(inside);
+            borderTo[i * 2] = getNode(outside);
+            borderFrom[i * 2 + 1] = borderTo[i * 2];
+            borderTo[i * 2 + 1] = borderFrom[i * 2];
+            borderCount[borderFrom[i * 2] + 1]++;
+            borderCount[borderFrom[i * 2 + 1] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            borderCount[i + 1] += borderCount[i];
+        }
+        this.borderStart = borderCount;
+        this.borderNodes = new int[pairCount * 2];
+        int[] next = Arrays.copyOf(borderStart, nodeCount);
+        for (int i = 0; i < pairCount * 2; i++) {
+            borderNodes[next[borderFrom[i]]++] = borderTo[i];
+        }
+        this.blockOffset = new int[blocks * blocks + 1];
+        for (int block = 0; block < blocks * blocks; block++) {
+            int size = blockStart[block + 1] - blockStart[block];
+            blockOffset[block + 1] = blockOffset[block] + size * size;
+        }
+        this.blockTimes = new int[blockOffset[blocks * blocks]];
+        this.queries = ThreadLocal.withInitial(Query::new);
+        // The blocks are independent, so the rows of blocks are searched by several threads
+        List<Callable<Void>> tasks = new ArrayList<>(blocks);
+        for (int by = 0; by < blocks; by++) {
+            int row = by;
+            tasks.add(() -> {
+                for (int block = row * blocks; block < (row + 1) * blocks; block++) {
+                    searchBlockTimes(block);
+                }
+                return null;
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Searches the times between all nodes of the block inside the block.
+     */
+    private void searchBlockTimes(int block) {
+        Query query = queries.get();
+        int size = blockStart[block + 1] - blockStart[block];
+        for (int i = 0; i < size; i++) {
+            query.searchBlock(nodeCells[blockStart[block] + i], -1);
+            for (int j = 0; j < size; j++) {
+                blockTimes[blockOffset[block] + i * size + j] = query.getBlockCost(nodeCells[blockStart[block] + j]);
+            }
+        }
+    }
+
+    /**
+     * Amount of entrances on a border of the given length.
+     */
+    private static int getEntranceCount(int length, int entranceDistance) {
+        return Math.max(1, length / entranceDistance);
+    }
+
+    /**
+     * Offset of the entrance from the start of the border, the entrances are placed in the middle of equal parts.
+     */
+    private static int getEntranceOffset(int length, int entranceDistance, int i) {
+        int count = getEntranceCount(length, entranceDistance);
+        return (int) ((2L * i + 1) * length / (2L * count));
+    }
+
+
+
+    private long keyOf(int cell) {
+        return (long) getBlock(cell) << 32 | cell;
+    }
+
+    private int getBlock(int cell) {
+        return cell / n / blockSize * blocks + cell % n / blockSize;
+    }
+
+    /**
+     * Node of the cell, -1 if the cell is no node.
+     */
+    private int getNode(int cell) {
+        int block = getBlock(cell);
+        int index = Arrays.binarySearch(nodeCells, blockStart[block], blockStart[block + 1], cell);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Amount of nodes of the abstract graph.
+     */
+    public int getNodeCount() {
+        return nodeCells.length;
+    }
+
+    /**
+     * Estimated amount of bytes used by the abstract graph.
+     */
+    public long getMemoryFootprint() {
+        return 16L + nodeCells.length * 4L + 16L + blockStart.length * 4L + 16L + blockOffset.length * 4L +
+                16L + blockTimes.length * 4L + 16L + borderStart.length * 4L + 16L + borderNodes.length * 4L;
+    }
+
+    /**
+     * Finds a path from the origin to the target over the abstract graph, the steps are created if the path is driven.
+     *
+     * Positions that are nearer than the size of a block are often separated by a border without an entrance nearby,
+     * so their path is searched directly on the field, which only visits a small area for such short paths.
+     *
+     * @return The found path, its time can be bigger than the time of the shortest path.
+     */
+    public Path findPath(Point from, Point to) {
+        if (Math.abs(from.getX() - to.getX()) + Math.abs(from.getY() - to.getY()) <= blockSize) {
+            return creator.findPath(from, to);
+        }
+        return queries.get().findPath(from.getY() * n + from.getX(), to.getY() * n + to.getX());
+    }
+
+    /**
+     * Search state of one thread, reused by all queries of the thread.
+     */
+    private final class Query {
+        /**
+         * State of the search inside a single block, indexed by the position of the cell in the block
+         */
+        private final IndexedHeap blockOpen = new IndexedHeap(blockSize * blockSize);
+        private final int[] blockCost = new int[blockSize * blockSize];
+        private final int[] blockParent = new int[blockSize * blockSize];
+        private final int[] blockVisited = new int[blockSize * blockSize];
+        private final int[] blockClosed = new int[blockSize * blockSize];
+        private int blockGeneration;
+        private int blockX;
+        private int blockY;
+        private int blockWidth;
+        private int blockHeight;
+        /**
+         * State of the search in the abstract graph, indexed by the node
+         */
+        private final IndexedHeap open = new IndexedHeap(Math.max(nodeCells.length, 1));
+        private final int[] cost = new int[nodeCells.length];
+        private final int[] parent = new int[nodeCells.length];
+        private final int[] visited = new int[nodeCells.length];
+        private final int[] closed = new int[nodeCells.length];
+        private int generation;
+        /**
+         * Time from each node of the block of the target to the target
+         */
+        private final int[] targetCost = new int[maxBlockNodes];
+
+        /**
+         * Searches the times from the origin to all cells of its block, stops early if the target is reached.
+         *
+         * @param target Cell at which the search stops, -1 to search the whole block
+         */
+        private void searchBlock(int origin, int target) {
+            int block = getBlock(origin);
+            blockX = block % blocks * blockSize;
+            blockY = block / blocks * blockSize;
+            blockWidth = Math.min(blockSize, n - blockX);
+            blockHeight = Math.min(blockSize, n - blockY);
+            if (++blockGeneration == Integer.MAX_VALUE) {
+                Arrays.fill(blockVisited, 0);
+                Arrays.fill(blockClosed, 0);
+                blockGeneration = 1;
+            }
+            blockOpen.clear();
+            int start = toBlockIndex(origin);
+            blockCost[start] = 0;
+            blockParent[start] = -1;
+            blockVisited[start] = blockGeneration;
+            blockOpen.add(start, 0);
+            int end = target >= 0 ? toBlockIndex(target) : -1;
+            while (!blockOpen.isEmpty()) {
+                int index = blockOpen.poll();
+                blockClosed[index] = blockGeneration;
+                if (index == end) {
+                    return;
+                }
+                int x = index % blockSize;
+                int y = index / blockSize;
+                if (x > 0) {
+                    relaxBlock(index, index - 1);
+                }
+                if (x + 1 < blockWidth) {
+                    relaxBlock(index, index + 1);
+                }
+                if (y > 0) {
+                    relaxBlock(index, index - blockSize);
+                }
+                if (y + 1 < blockHeight) {
+                    relaxBlock(index, index + blockSize);
+                }
+            }
+        }
+
+        private void relaxBlock(int index, int neighbor) {
+            if (blockClosed[neighbor] == blockGeneration) {
+                return;
+            }
+            int neighborCost = blockCost[index] + times[toCell(neighbor)];
+            if (blockVisited[neighbor] != blockGeneration) {
+                blockVisited[neighbor] = blockGeneration;
+                blockCost[neighbor] = neighborCost;
+                blockParent[neighbor] = index;
+                blockOpen.add(neighbor, neighborCost);
+            } else if (neighborCost < blockCost[neighbor]) {
+                blockCost[neighbor] = neighborCost;
+                blockParent[neighbor] = index;
+                blockOpen.decreaseKey(neighbor, neighborCost);
+            }
+        }
+
+        private int toBlockIndex(int cell) {
+            return (cell / n - blockY) * blockSize + cell % n - blockX;
+        }
+
+        private int toCell(int index) {
+            return (blockY + index / blockSize) * n + blockX + index % blockSize;
+        }
+
+        /**
+         * Time from the origin of the last block search to the cell, the cell has to be in the same block.
+         */
+        private int getBlockCost(int cell) {
+            return blockCost[toBlockIndex(cell)];
+        }
+
+        /**
+         * Starts a new search of the abstract graph, the nodes of the block of the origin are added with their time
+         * from the origin.
+         */
+        private void start(int origin) {
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                Arrays.fill(closed, 0);
+                generation = 1;
+            }
+            open.clear();
+            searchBlock(origin, -1);
+            int block = getBlock(origin);
+            for (int node = blockStart[block]; node < blockStart[block + 1]; node++) {
+                visited[node] = generation;
+                cost[node] = getBlockCost(nodeCells[node]);
+                parent[node] = -1;
+                open.add(node, cost[node]);
+            }
+        }
+
+        /**
+         * Closes the node with the smallest time and relaxes its neighbors in the abstract graph.
+         *
+         * @return The closed node
+         */
+        private int expandNext() {
+            int node = open.poll();
+            closed[node] = generation;
+            int block = getBlock(nodeCells[node]);
+            int size = blockStart[block + 1] - blockStart[block];
+            int row = blockOffset[block] + (node - blockStart[block]) * size;
+            for (int i = 0; i < size; i++) {
+                relax(node, blockStart[block] + i, cost[node] + blockTimes[row + i]);
+            }
+            for (int i = borderStart[node]; i < borderStart[node + 1]; i++) {
+                relax(node, borderNodes[i], cost[node] + times[nodeCells[borderNodes[i]]]);
+            }
+            return node;
+        }
+
+        private void relax(int node, int neighbor, int neighborCost) {
+            if (closed[neighbor] == generation) {
+                return;
+            }
+            if (visited[neighbor] != generation) {
+                visited[neighbor] = generation;
+                cost[neighbor] = neighborCost;
+                parent[neighbor] = node;
+                open.add(neighbor, neighborCost);
+            } else if (neighborCost < cost[neighbor]) {
+                cost[neighbor] = neighborCost;
+                parent[neighbor] = node;
+                open.decreaseKey(neighbor, neighborCost);
+            }
+        }
+
+        private Path findPath(int from, int to) {
+            start(from);
+            int bestCost = Integer.MAX_VALUE;
+            int bestNode = -1;
+            // Inside the same block the path does not have to use any node
+            if (getBlock(from) == getBlock(to)) {
+                bestCost = getBlockCost(to);
+            }
+            // The reversed path pays the time of the node instead of the time of the target
+            int targetBlock = getBlock(to);
+            searchBlock(to, -1);
+            for (int node = blockStart[targetBlock]; node < blockStart[targetBlock + 1]; node++) {
+                targetCost[node - blockStart[targetBlock]] = getBlockCost(nodeCells[node]) - times[nodeCells[node]] + times[to];
+            }
+            while (!open.isEmpty() && open.peekKey() < bestCost) {
+                int node = expandNext();
+                if (node >= blockStart[targetBlock] && node < blockStart[targetBlock + 1]) {
+                    int total = cost[node] + targetCost[node - blockStart[targetBlock]];
+                    if (total < bestCost) {
+                        bestCost = total;
+                        bestNode = node;
+                    }
+                }
+            }
+            return createPath(from, to, bestCost, getChain(bestNode));
+        }
+
+        /**
+         * Nodes of the abstract path that ends at the given node, starting with the first node after the origin.
+         */
+        private int[] getChain(int node) {
+            int length = 0;
+            for (int current = node; current >= 0; current = parent[current]) {
+                length++;
+            }
+            int[] chain = new int[length];
+            for (int current = node, i = length - 1; current >= 0; current = parent[current], i--) {
+                chain[i] = nodeCells[current];
+            }
+            return chain;
+        }
+
+        /**
+         * Refines the abstract path to the cells of the path, the nodes of one block are connected by a search inside
+         * the block.
+         */
+        private PackedSteps refine(int from, int[] chain, int to) {
+            int[] cells = {from};
+            int length = 1;
+            int current = from;
+            for (int i = 0; i <= chain.length; i++) {
+                int next = i < chain.length ? chain[i] : to;
+                if (next == current) {
+                    continue;
+                }
+                if (getBlock(next) != getBlock(current)) {
+                    // Step over the border of an entrance
+                    cells = MathUtil.append(cells, length++, next);
+                } else {
+                    searchBlock(current, next);
+                    int start = length;
+                    for (int index = toBlockIndex(next); blockParent[index] >= 0; index = blockParent[index]) {
+                        cells = MathUtil.append(cells, length++, toCell(index));
+                    }
+                    // The cells were added from the end of the part to its start
+                    for (int a = start, b = length - 1; a < b; a++, b--) {
+                        int swap = cells[a];
+                        cells[a] = cells[b];
+                        cells[b] = swap;
+                    }
+                }
+                current = next;
+            }
+            byte[] directions = new byte[length];
+            int[] stepTimes = new int[length];
+            for (int i = 0; i < length; i++) {
+                stepTimes[i] = times[cells[i]];
+                if (i > 0) {
+                    int difference = cells[i] - cells[i - 1];
+                    Direction direction = difference == 1 ? Direction.RIGHT : difference == -1 ? Direction.LEFT :
+                            difference == n ? Direction.DOWN : Direction.UP;
+                    directions[i] = (byte) direction.ordinal();
+                }
+            }
+            return new PackedSteps(new Point(from % n, from / n), new Point(to % n, to / n), directions, stepTimes);
+        }
+
+        private Path createPath(int from, int to, int time, int[] chain) {
+            Point origin = new Point(from % n, from / n);
+            Point target = new Point(to % n, to / n);
+            return new Path(origin, times[from], target, times[to], time, () -> queries.get().refine(from, chain, to));
+        }
+    }
+}
@@ -0,0 +1,272 @@
+import java.util.Arrays;
+
+/**
+ * Map from a pair of cells to the path between them.
+ * <p>
+ * The pair is packed into one long, the origin cell in the upper and the destination cell in the lower 32 bits. The
+ * keys are stored in an open addressing table with linear probing, so a lookup needs no allocation and no equals call,
+ * in contrast to a {@link java.util.HashMap} with a key object.
+ * <p>
+ * The map can be limited to an estimated amount of bytes. If the limit is exceeded, paths are evicted with the CLOCK
+ * algorithm: every hit marks the path as referenced, the clock hand moves over the table, clears the marks and evicts
+ * the first path which was not referenced since the last round.
+ * <p>
+ * The limit is an estimate. A lazy path only creates its steps when it is driven, after it was added. The size of a
+ * path is estimated when it is added and estimated again on every hit and whenever the clock hand passes it, so steps
+ * created in between are counted late. The map also can not release paths which are still referenced elsewhere, an
+ * evicted path only frees its memory if no other object keeps it.
+ * <p>
+ * All methods are guarded by the monitor of the map, a lookup changes the marks of the clock and the counters as well.
+ * Several maps can be used as stripes to reduce the contention of concurrent threads, see {@link PathStore}.
+ */
+public class PathMap {
+    /**
+     * Marks an empty slot, no valid key is negative because the cell indices are not negative.
+     */
+    private static final long EMPTY = -1;
+
+    /**
+     * Estimated amount of bytes used by a slot of the table
+     */
+    private static final int SLOT_SIZE = 8 + 4 + 4 + 1;
+
+    private final long byteLimit;
+    private long[] keys;
+    private Path[] values;
+    /**
+     * Estimated size of each stored path in bytes
+     */
+    private int[] sizes;
+    /**
+     * Marks the paths which were used since the clock hand passed them the last time
+     */
+    private boolean[] referenced;
+    private int size;
+    private long bytes;
+    private int hand;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public PathMap() {
+        this(16, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param expectedSize Amount of paths that can be stored without growing the table.
+     * @param byteLimit    Estimated amount of bytes the stored paths may use, paths are evicted above this limit.
+     */
+    public PathMap(int expectedSize, long byteLimit) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        this.byteLimit = byteLimit;
+        this.keys = new long[capacity];
+        this.values = new Path[capacity];
+        this.sizes = new int[capacity];
+        this.referenced = new boolean[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Packs the cell indices of both positions into a key.
+     *
+     * @param n Size of the field
+     */
+    public static long key(Position from, Position to, int n) {
+        return (long) (from.getY() * n + from.getX()) << 32 | (to.getY() * n + to.getX());
+    }
+
+    /**
+     * Returns the stored path, null if there is none.
+     */
+    public synchronized Path get(long key) {
+        int slot = find(key);
+        if (keys[slot] != key) {
+            misses++;
+            return null;
+        }
+        hits++;
+        referenced[slot] = true;
+        Path path = values[slot];
+        // The path may have created its steps since it was added or hit the last time
+        if (updateSize(slot)) {
+            evict();
+        }
+        return path;
+    }
+
+    public synchronized void put(long key, Path path) {
+        int slot = find(key);
+        if (keys[slot] == key) {
+            bytes -= sizes[slot];
+            values[slot] = path;
+            sizes[slot] = (int) Math.min(path.getMemoryFootprint(), Integer.MAX_VALUE);
+            bytes += sizes[slot];
+            referenced[slot] = true;
+            evict();
+            return;
+        }
+        insert(slot, key, path);
+    }
+
+    /**
+     * Only stores the path if there is no path stored for the key yet.
+     */
+    public synchronized void putIfAbsent(long key, Path path) {
+        int slot = find(key);
+        if (keys[slot] != key) {
+            insert(slot, key, path);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Estimated amount of bytes used by the table, without the stored paths.
+     */
+    public synchronized long getMemoryFootprint() {
+        // Array headers and the entries of all slots, with a compressed reference per path
+        return 4 * 16L + keys.length * (long) SLOT_SIZE;
+    }
+
+    /**
+     * Estimated amount of bytes used by the stored paths.
+     */
+    public synchronized long getPathBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private void insert(int slot, long key, Path path) {
+        keys[slot] = key;
+        values[slot] = path;
+        sizes[slot] = (int) Math.min(path.getMemoryFootprint(), Integer.MAX_VALUE);
+        // A new path survives the next round of the clock hand
+        referenced[slot] = true;
+        bytes += sizes[slot];
+        size++;
+        // The load factor is kept below one half, so the probe sequences stay short
+        if (size * 2 > keys.length) {
+            grow();
+        }
+        evict();
+    }
+
+    /**
+     * Evicts paths until the stored paths fit into the byte limit.
+     */
+    private void evict() {
+        while (bytes > byteLimit && size > 0) {
+            if (keys[hand] == EMPTY) {
+                hand = (hand + 1) & (keys.length - 1);
+            } else if (updateSize(hand)) {
+                // The hand checks the slot again with its new size
+                continue;
+            } else if (referenced[hand]) {
+                referenced[hand] = false;
+                hand = (hand + 1) & (keys.length - 1);
+            } else {
+                // The hand stays on the slot, another path may be moved into it
+                remove(hand);
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Estimates the size of the path in the slot again.
+     *
+     * @return True if the size has grown
+     */
+    private boolean updateSize(int slot) {
+        int pathSize = (int) Math.min(values[slot].getMemoryFootprint(), Integer.MAX_VALUE);
+        int grown = pathSize - sizes[slot];
+        sizes[slot] = pathSize;
+        bytes += grown;
+        return grown > 0;
+    }
+
+    /**
+     * Removes the path in the slot and moves the following paths of the probe sequence back, so all paths can still
+     * be found without tombstones.
+     */
+    private void remove(int slot) {
+        int mask = keys.length - 1;
+        bytes -= sizes[slot];
+        size--;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            // Only move the path if its home slot is not between the hole and its current slot
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                sizes[hole] = sizes[next];
+                referenced[hole] = referenced[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        sizes[hole] = 0;
+        referenced[hole] = false;
+    }
+
+    /**
+     * Slot of the key, or the empty slot where the key has to be inserted.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Path[] oldValues = values;
+        int[] oldSizes = sizes;
+        boolean[] oldReferenced = referenced;
+        keys = new long[oldKeys.length * 2];
+        values = new Path[oldValues.length * 2];
+        sizes = new int[oldSizes.length * 2];
+        referenced = new boolean[oldReferenced.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                sizes[slot] = oldSizes[i];
+                referenced[slot] = oldReferenced[i];
+            }
+        }
+        hand = 0;
+    }
+
+    /**
+     * Mixes the bits of the key, the lower bits of neighboring cells differ only slightly.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
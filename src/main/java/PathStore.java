@@ -1,99 +1,336 @@
 import robot.World;
 
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.IntUnaryOperator;
-import java.util.stream.Collectors;
 
 /**
  * Center collection which can be used to get the paths to a material on the field or from a material to the factory and
  * vise versa.
+ * <p>
+ * After its creation the store can be extended and read by several threads at once. The cached paths are split into
+ * stripes by their key, each stripe is guarded by its own monitor. The times are kept in a {@link TimeLookup}, which
+ * is read without locks. A suspended search is removed from the store while it is continued, so two threads never
+ * continue the same search.
  */
 public class PathStore {
+    /**
+     * Amount of maps the cached paths are split into
+     */
+    private static final int PATH_STRIPES = 16;
+
     private final Map<Point, Path> factories;
     private final Map<Point, List<Path>> neighbors;
-    private final Map<PointPair, Path> allPaths;
+    private final PathMap[] pathStripes;
     private final TimeLookup timeLookup;
+    /**
+     * Suspended searches of {@link #searchNeighbors(Collection, Config)}, so a later search of the same material with a
+     * bigger area only has to search the new cells. Frontiers with more than {@link #getFrontierLimit()} cells are not
+     * kept to limit the memory.
+     */
+    private final Map<Point, PathCreator.Frontier> frontiers;
     private final PathCreator creator;
+    private final MaterialIndex materialIndex;
+    /**
+     * Estimated amount of bytes used by all shortest path trees of the cached paths
+     */
+    private final LongAdder treeFootprint;
+    /**
+     * Trees of the paths found on creation of the store, kept to write a snapshot of the store
+     */
+    private PathTree factoryTree;
+    private final List<PathTree> materialTrees;
     private final World world;
 
     public PathStore(Environment env, Config config) {
+        this(env, config, Environment.PATH_THREADS);
+    }
+
+    /**
+     * The neighbor searches of the materials are independent of each other, so they are split between the given amount
+     * of threads. The results are merged in the order of the positions afterwards, so the store is the same for every
+     * amount of threads.
+     *
+     * @param threads Amount of threads used to search the neighbors of the materials.
+     */
+    public PathStore(Environment env, Config config, int threads) {
+        this(env);
+        // The paths are kept as shortest path trees, the steps of the paths are created if the paths are driven
+        PathTree factoryTree = creator.findTreeToMaterial();
+        List<Point> materials = new ArrayList<>();
+        for (int x = 0; x < world.getN(); x++) {
+            for (int y = 0; y < world.getN(); y++) {
+                if (world.getFieldMaterials(x, y) > 0) {
+                    materials.add(new Point(x, y));
+                }
+            }
+        }
+        List<Callable<PathTree>> searches = new ArrayList<>(materials.size());
+        for (Point pos : materials) {
+            searches.add(() -> searchNeighbors(pos, config));
+        }
+        addTrees(factoryTree, invokeAll(searches, threads));
+    }
+
+    /**
+     * Creates the store from already searched trees, for example from a snapshot of a previous run.
+     *
+     * @param factoryTree   Tree of the paths from the factory to all materials
+     * @param materialTrees Tree of the paths to the neighbors of each material, in the order of the positions
+     */
+    public PathStore(Environment env, PathTree factoryTree, List<PathTree> materialTrees) {
+        this(env);
+        addTrees(factoryTree, materialTrees);
+    }
+
+    private PathStore(Environment env) {
         this.world = env.getWorld();
         this.creator = env.getCreator();
+        this.materialIndex = env.getMaterialIndex();
         this.factories = new HashMap<>();
         this.neighbors = new HashMap<>();
-        this.allPaths = new HashMap<>();
+        this.pathStripes = new PathMap[PATH_STRIPES];
+        for (int i = 0; i < PATH_STRIPES; i++) {
+            pathStripes[i] = new PathMap(16, Environment.PATH_CACHE_BYTES / PATH_STRIPES);
+        }
+        this.frontiers = new ConcurrentHashMap<>();
+        this.treeFootprint = new LongAdder();
+        this.timeLookup = new TimeLookup(world, world.getN() * 2);
+        this.materialTrees = new ArrayList<>();
+    }
 
-        List<Path> pathsToMaterial = creator.findPathsToMaterial();
-        Map<Point, Path> materialPaths = pathsToMaterial.stream().collect(Collectors.toMap(Path::getDestinationPos, Function.identity()));
-        this.timeLookup = new TimeLookup(pathsToMaterial.size());
-        for (int x = 0; x < world.getN(); x++) {
-            for (int y = 0; y < world.getN(); y++) {
-                if (world.getFieldMaterials(x, y) > 0) {
-                    Point pos = new Point(x, y);
-                    Path deliveryPath = materialPaths.get(pos).invert();
-                    List<Path> validNeighbors = creator.createPaths(
-                            pos, p -> p.hasMaterials(world) && !p.at(pos),
-                            config.getNeighborLimit(),
-                            config.getDistanceLimit(world.getN())
-                    );
-                    for (Path p : validNeighbors) {
-                        Path inverted = p.invert();
-                        timeLookup.setEdge(p.getDestinationPos(), pos, inverted.getTimeCost());
-                        timeLookup.setEdge(pos, p.getDestinationPos(), p.getTimeCost());
-                        allPaths.putIfAbsent(new PointPair(p.getDestinationPos(), pos), inverted);
-                        allPaths.putIfAbsent(new PointPair(pos, p.getDestinationPos()), p);
-                    }
-                    timeLookup.setFactory(pos, deliveryPath.getTimeCost());
-                    neighbors.put(pos, validNeighbors);
-                    factories.put(pos, deliveryPath);
+    /**
+     * Adds the paths of the trees to the store, in the order of the given searches.
+     */
+    private void addTrees(PathTree factoryTree, List<PathTree> trees) {
+        this.factoryTree = factoryTree;
+        Map<Point, Path> materialPaths = new HashMap<>();
+        for (int i = 0; i < factoryTree.size(); i++) {
+            materialPaths.put(factoryTree.getDestination(i), factoryTree.getPath(i));
+        }
+        treeFootprint.add(factoryTree.getMemoryFootprint());
+        for (PathTree tree : trees) {
+            Point pos = tree.getOrigin();
+            Path deliveryPath = materialPaths.get(pos).invert();
+            List<Path> validNeighbors = new ArrayList<>(tree.size());
+            for (int i = 0; i < tree.size(); i++) {
+                validNeighbors.add(tree.getPath(i));
+            }
+            treeFootprint.add(tree.getMemoryFootprint());
+            materialTrees.add(tree);
+            for (Path p : validNeighbors) {
+                Path inverted = p.invert();
+                timeLookup.setEdge(p.getDestinationPos(), pos, inverted.getTimeCost());
+                timeLookup.setEdge(pos, p.getDestinationPos(), p.getTimeCost());
+                getStripe(key(p.getDestinationPos(), pos)).putIfAbsent(key(p.getDestinationPos(), pos), inverted);
+                getStripe(key(pos, p.getDestinationPos())).putIfAbsent(key(pos, p.getDestinationPos()), p);
+            }
+            timeLookup.setFactory(pos, deliveryPath.getTimeCost());
+            neighbors.put(pos, validNeighbors);
+            factories.put(pos, deliveryPath);
+        }
+    }
+
+    /**
+     * Searches the nearest neighbors of one material, only reads the shared state, so it can run on any thread.
+     * <p>
+     * The search stops as soon as all materials inside the search area are found, even if there are less of them than
+     * the neighbor limit. Without any other material in the area the search is skipped.
+     * <p>
+     * The frontier of this search is not kept. Its area reaches half the field in every direction, the later searches
+     * of {@link #searchNeighbors(Collection, Config)} only expand the area of the searched materials by a few fields,
+     * so they can almost never resume it.
+     */
+    private PathTree searchNeighbors(Point pos, Config config) {
+        int distanceLimit = config.getDistanceLimit(world.getN());
+        int others = materialIndex.countInside(Bounds.around(world, pos, distanceLimit)) - 1;
+        if (others <= 0) {
+            return new PathTree(world, pos, new int[]{-1}, new byte[]{0}, new Point[0], new int[0], new int[0]);
+        }
+        // A limit of zero still finds the nearest material, like a search without the index
+        int limit = Math.min(config.getNeighborLimit(), others);
+        return creator.findTree(creator.createFrontier(pos), p -> p.hasMaterials(world) && !p.at(pos), limit, distanceLimit);
+    }
+
+    /**
+     * Runs all tasks and returns their results in the order of the tasks.
+     */
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks, int threads) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (threads <= 1) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+                return results;
+            }
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (Future<T> future : pool.invokeAll(tasks)) {
+                    results.add(future.get());
                 }
+            } finally {
+                pool.shutdown();
             }
+            return results;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
         }
     }
 
     /**
      * Searches the path to the neighbors of the given positions.
+     * <p>
+     * The pairs of the positions are first resolved from the cached paths. Only the positions with missing pairs are
+     * searched, with one search per position that stops after all missing positions are found. A position is looked up
+     * by its cell index in a sorted array, so no set of the positions has to be created for each position.
      *
      * @param rang All position to find the neighbors for
      * @param config Configuration of pathfinding
      */
     public Map<Point, List<Path>> searchNeighbors(Collection<Point> rang, Config config) {
+        int n = world.getN();
+        // The cached paths of each position are added in the iteration order of a set of all positions
+        Point[] members = new HashSet<>(rang).toArray(new Point[0]);
+        long[] sorted = new long[members.length];
+        for (int i = 0; i < members.length; i++) {
+            // Cell index in the upper and member index in the lower bits, so sorting keeps the member of each cell
+            sorted[i] = (long) (members[i].getY() * n + members[i].getX()) << 32 | i;
+        }
+        Arrays.sort(sorted);
+        int[] cells = new int[members.length];
+        int[] memberOf = new int[members.length];
+        for (int i = 0; i < sorted.length; i++) {
+            cells[i] = (int) (sorted[i] >>> 32);
+            memberOf[i] = (int) sorted[i];
+        }
+        // Members with the stamp of the current position have no cached path from it
+        int[] missing = new int[members.length];
+        int stamp = 0;
         Map<Point, List<Path>> remainingNeighbors = new HashMap<>();
         for (Point pos : rang) {
-            Set<Point> remaining = new HashSet<>(rang);
-            remaining.remove(pos);
+            int self = memberOf[Arrays.binarySearch(cells, pos.getY() * n + pos.getX())];
+            int current = ++stamp;
             List<Path> neighborPaths = new ArrayList<>();
-            Iterator<Point> iterator = remaining.iterator();
-            Point value;
-            while (iterator.hasNext()) {
-                value = iterator.next();
-                Path neighbor = allPaths.get(new PointPair(pos, value));
-                if(neighbor != null) {
+            List<Point> remaining = new ArrayList<>();
+            for (int j = 0; j < members.length; j++) {
+                if (j == self) {
+                    continue;
+                }
+                long key = key(pos, members[j]);
+                Path neighbor = getStripe(key).get(key);
+                if (neighbor != null) {
                     neighborPaths.add(neighbor);
-                    iterator.remove();
+                } else {
+                    missing[j] = current;
+                    remaining.add(members[j]);
                 }
             }
-            remaining.add(pos);
-            int limit = Math.min(config.getNeighborLimit(), remaining.size() - 1);
-            neighborPaths.addAll(creator.createPaths(
-                    pos, p -> p.hasMaterials(world) && !p.at(pos) && remaining.contains(p),
-                    remaining,
-                    limit,
-                    config.getDistanceLimit(world.getN())
-            ));
+            int limit = Math.min(config.getNeighborLimit(), remaining.size());
+            // All pairs are covered, the search would not find any destination
+            if (limit > 0) {
+                remaining.add(pos);
+                // Taken out of the store, so no other thread continues the same search meanwhile
+                PathCreator.Frontier frontier = frontiers.remove(pos);
+                if (frontier == null) {
+                    frontier = creator.createFrontier(pos);
+                }
+                PathTree tree = creator.findTree(
+                        frontier, p -> {
+                            int index = Arrays.binarySearch(cells, p.getY() * n + p.getX());
+                            return index >= 0 && missing[memberOf[index]] == current && p.hasMaterials(world);
+                        },
+                        remaining,
+                        limit,
+                        config.getDistanceLimit(n)
+                );
+                for (int j = 0; j < tree.size(); j++) {
+                    neighborPaths.add(tree.getPath(j));
+                }
+                treeFootprint.add(tree.getMemoryFootprint());
+                keepFrontier(pos, frontier);
+            }
             for (Path p : neighborPaths) {
                 Path inverted = p.invert();
                 timeLookup.setEdge(p.getDestinationPos(), pos, inverted.getTimeCost());
                 timeLookup.setEdge(pos, p.getDestinationPos(), p.getTimeCost());
-                allPaths.putIfAbsent(new PointPair(p.getDestinationPos(), pos), inverted);
-                allPaths.putIfAbsent(new PointPair(pos, p.getDestinationPos()), p);
+                getStripe(key(p.getDestinationPos(), pos)).putIfAbsent(key(p.getDestinationPos(), pos), inverted);
+                getStripe(key(pos, p.getDestinationPos())).putIfAbsent(key(pos, p.getDestinationPos()), p);
             }
             remainingNeighbors.put(pos, neighborPaths);
         }
         return remainingNeighbors;
     }
 
+    /**
+     * Removes all suspended searches, the next search of each material starts again at the material.
+     */
+    void clearFrontiers() {
+        frontiers.clear();
+    }
+
+    private void keepFrontier(Point pos, PathCreator.Frontier frontier) {
+        if (frontier.getCellCount() <= getFrontierLimit()) {
+            frontiers.put(pos, frontier);
+        }
+    }
+
+    /**
+     * Maximum amount of cells of a kept frontier, the cells of eight rows of the field. At most one frontier is kept
+     * per material, so with 2N materials all frontiers together have at most 16 times the cells of the field.
+     */
+    private int getFrontierLimit() {
+        return world.getN() * 8;
+    }
+
+    private long key(Point from, Point to) {
+        return PathMap.key(from, to, world.getN());
+    }
+
+    /**
+     * Stripe of the cached paths that contains the key.
+     */
+    private PathMap getStripe(long key) {
+        return pathStripes[(int) (key ^ key >>> 32) * 0x9E3779B9 >>> 28];
+    }
+
+    /**
+     * Returns the path between the two given positions. If the path was not found by any search before or was evicted
+     * from the cache, it is searched again and cached. The cost of an evicted path is still known by the
+     * {@link TimeLookup}, unless the path was searched in the {@link PathHierarchy}.
+     */
+    public Path getPath(Point from, Point to) {
+        long key = key(from, to);
+        Path path = getStripe(key).get(key);
+        if (path != null) {
+            return path;
+        }
+        boolean exact = true;
+        if (Environment.PATH_HIERARCHY && world.getN() >= Environment.HIERARCHY_MIN_SIZE) {
+            // Only the corridor of the abstract path is searched, the path can be slightly longer than the shortest
+            path = creator.getHierarchy().findPath(from, to);
+            exact = false;
+        } else if (creator.getLandmarks() != null) {
+            // The A* search with the bounds of the landmarks visits far less cells than the bidirectional search
+            path = creator.findPath(from, to);
+        } else {
+            path = creator.findPathBidirectional(from, to);
+        }
+        if (path == null) {
+            throw new IllegalStateException();
+        }
+        if (exact) {
+            // The lookup only keeps the times of shortest paths
+            timeLookup.setEdge(from, to, path.getTimeCost());
+        }
+        getStripe(key).put(key, path);
+        return path;
+    }
+
     public World getWorld() {
         return world;
     }
@@ -127,6 +364,101 @@ public class PathStore {
         return factories;
     }
 
+    /**
+     * Estimated amount of bytes used by the map of all cached paths, without the paths.
+     */
+    public long getPathMapFootprint() {
+        long footprint = 0;
+        for (PathMap stripe : pathStripes) {
+            footprint += stripe.getMemoryFootprint();
+        }
+        return footprint;
+    }
+
+    /**
+     * Tree of the paths from the factory to all materials.
+     */
+    public PathTree getFactoryTree() {
+        return factoryTree;
+    }
+
+    /**
+     * Trees of the paths to the neighbors of each material found on creation of the store, in the order of the
+     * positions.
+     */
+    public List<PathTree> getMaterialTrees() {
+        return materialTrees;
+    }
+
+    /**
+     * Estimated amount of bytes used by the shortest path trees of all cached paths.
+     */
+    public long getTreeFootprint() {
+        return treeFootprint.sum();
+    }
+
+    /**
+     * Amount of lookups of a path between two positions that found a cached path.
+     */
+    public long getPathCacheHits() {
+        long hits = 0;
+        for (PathMap stripe : pathStripes) {
+            hits += stripe.getHits();
+        }
+        return hits;
+    }
+
+    /**
+     * Amount of lookups of a path between two positions that found no cached path.
+     */
+    public long getPathCacheMisses() {
+        long misses = 0;
+        for (PathMap stripe : pathStripes) {
+            misses += stripe.getMisses();
+        }
+        return misses;
+    }
+
+    /**
+     * Amount of cached paths that were evicted to stay below the memory limit.
+     */
+    public long getPathCacheEvictions() {
+        long evictions = 0;
+        for (PathMap stripe : pathStripes) {
+            evictions += stripe.getEvictions();
+        }
+        return evictions;
+    }
+
+    /**
+     * Estimated amount of bytes used by the cached paths.
+     */
+    public long getPathCacheBytes() {
+        long bytes = 0;
+        for (PathMap stripe : pathStripes) {
+            bytes += stripe.getPathBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Amount of cached paths between two positions.
+     */
+    public int getPathCount() {
+        int count = 0;
+        for (PathMap stripe : pathStripes) {
+            count += stripe.size();
+        }
+        return count;
+    }
+
+    /**
+     * Lower bounds of the time between two positions, null if the landmarks are disabled.
+     */
+    public Landmarks getLandmarks() {
+        return creator.getLandmarks();
+    }
+
     public TimeLookup getLookup() {
         return timeLookup;
     }
@@ -157,30 +489,4 @@ public class PathStore {
             return neighbors;
         }
     }
-
-    /**
-     * Helper class to simulate a double key.
-     * This is used to cache the found paths.
-     */
-    private static final class PointPair {
-        private final Point a;
-        private final Point b;
-
-        public PointPair(Point a, Point b) {
-            this.a = a;
-            this.b = b;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof PointPair posPair)) return false;
-            return a.equals(posPair.a) && b.equals(posPair.b);
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(a, b);
-        }
-    }
 }
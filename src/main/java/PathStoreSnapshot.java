@@ -0,0 +1,172 @@
+import robot.World;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary snapshot of the trees a {@link PathStore} is created from. The world and the searches are deterministic, so a
+ * later run on the same world can load the snapshot instead of searching all paths again.
+ * <p>
+ * The file starts with a header of the magic number, the version, the size of the field, the distance and neighbor
+ * limit of the configuration, a fingerprint of the field and the searches and the amount of material trees. The factory
+ * tree and the material trees follow, in the format of {@link PathTree#write(DataOutputStream)}.
+ * <p>
+ * The file is memory mapped on load. Only the header and the destinations of the trees are read, the nodes of the
+ * trees stay in the mapped file until a path is driven. The sizes of all trees are checked before they are read, and
+ * the destinations of each tree are checked against their checksum. A snapshot that can not be read is ignored and
+ * the store is created again. The nodes of a tree are only checked against their checksum when its first path is
+ * driven, so a whole file checksum does not have to read every page of the file. A damaged node is therefore only
+ * found while the robot drives, which ends the run with an exception.
+ */
+public class PathStoreSnapshot {
+    private static final int MAGIC = 0x50535431;
+    /**
+     * Version of the file format
+     */
+    private static final int VERSION = 3;
+    /**
+     * Version of the searches that create the trees. Of several paths with the same cost the searches choose one by the
+     * order in which they settle the cells, so this has to be increased by every change of the searches that can
+     * choose other paths.
+     */
+    private static final int SEARCH_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private PathStoreSnapshot() {
+    }
+
+    /**
+     * Loads the store from its snapshot if there is one for the world and the configuration, otherwise the store is
+     * created and a snapshot is written for the next run.
+     */
+    public static PathStore readOrCreate(Environment env, PathStore.Config config) {
+        File file = getFile(env.getWorld(), config);
+        try {
+            PathStore store = read(env, config, file);
+            if (store != null) {
+                return store;
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.info("Could not read path snapshot " + file + ": " + e);
+        }
+        PathStore store = new PathStore(env, config);
+        try {
+            write(store, config, file);
+        } catch (IOException e) {
+            Log.info("Could not write path snapshot " + file + ": " + e.getMessage());
+        }
+        return store;
+    }
+
+    /**
+     * Snapshot file of the given world and configuration.
+     */
+    public static File getFile(World world, PathStore.Config config) {
+        int n = world.getN();
+        String name = "paths-" + n + "-" + config.getDistanceLimit(n) + "-" + config.getNeighborLimit() + ".bin";
+        return new File(Environment.SNAPSHOT_DIRECTORY, name);
+    }
+
+    public static void write(PathStore store, PathStore.Config config, File file) throws IOException {
+        World world = store.getWorld();
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        // Written to a temporary file first, so a run never sees a partly written snapshot
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(world.getN());
+            out.writeInt(config.getDistanceLimit(world.getN()));
+            out.writeInt(config.getNeighborLimit());
+            out.writeLong(fingerprint(world));
+            out.writeInt(store.getMaterialTrees().size());
+            store.getFactoryTree().write(out);
+            for (PathTree tree : store.getMaterialTrees()) {
+                tree.write(out);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the store from the snapshot file.
+     *
+     * @return The loaded store, null if there is no snapshot of the world and the configuration.
+     * @throws IOException If the snapshot is truncated or corrupted
+     */
+    public static PathStore read(Environment env, PathStore.Config config, File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        World world = env.getWorld();
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // A single buffer can only map up to 2 GB
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC ||
+                buffer.getInt(4) != VERSION ||
+                buffer.getInt(8) != world.getN() ||
+                buffer.getInt(12) != config.getDistanceLimit(world.getN()) ||
+                buffer.getInt(16) != config.getNeighborLimit() ||
+                buffer.getLong(20) != fingerprint(world)) {
+            return null;
+        }
+        int length = buffer.limit();
+        int count = buffer.getInt(28);
+        // Each tree has a header, so a valid count can not be bigger than the file
+        if (count < 0 || count > buffer.limit() / 20) {
+            throw new IOException("Invalid amount of trees " + count);
+        }
+        // Check the sizes of all trees first, so a truncated file is found before anything is decoded
+        int end = HEADER_SIZE;
+        for (int i = 0; i <= count; i++) {
+            end += PathTree.getSize(buffer, end);
+        }
+        if (end != length) {
+            throw new IOException("Snapshot has " + (length - end) + " bytes after the last tree");
+        }
+        int offset = HEADER_SIZE;
+        PathTree factoryTree = PathTree.read(world, buffer, offset);
+        offset += PathTree.getSize(buffer, offset);
+        List<PathTree> materialTrees = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            materialTrees.add(PathTree.read(world, buffer, offset));
+            offset += PathTree.getSize(buffer, offset);
+        }
+        return new PathStore(env, factoryTree, materialTrees);
+    }
+
+    /**
+     * Hash of the times and materials of all fields and of the searches that create the trees, so a snapshot of a
+     * different field or of other searches is never loaded.
+     */
+    private static long fingerprint(World world) {
+        long hash = 17;
+        hash = hash * 31 + SEARCH_VERSION;
+        hash = hash * 31 + Environment.SEARCH_QUEUE.ordinal();
+        for (int y = 0; y < world.getN(); y++) {
+            for (int x = 0; x < world.getN(); x++) {
+                hash = hash * 31 + world.getFieldTime(x, y);
+                hash = hash * 31 + world.getFieldMaterials(x, y);
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,247 @@
+import robot.World;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Shortest path tree of one search origin, which only contains the cells on the paths to the found destinations.
+ * <p>
+ * The paths from one origin share most of their cells, so the tree stores each of these cells only once, as the index
+ * of its parent node and the direction from the parent. The positions of the cells are not stored, they are restored
+ * from the directions while walking from a destination to the origin. The steps of a path are only created if the path
+ * is driven.
+ * <p>
+ * The nodes are read through buffers, so a tree can also be read directly from a memory mapped snapshot file without
+ * copying the nodes into the heap, see {@link #write(DataOutputStream)} and {@link #read(World, ByteBuffer, int)}. The
+ * nodes of a read tree are checked against their checksum when the first path of the tree is driven, so the pages of
+ * the trees that are never used are not touched.
+ */
+public class PathTree {
+    private final World world;
+    private final Point origin;
+    /**
+     * Index of the parent node of each node, -1 for the origin
+     */
+    private final IntBuffer parents;
+    /**
+     * Ordinal of the direction the robot has to move from the parent to reach the node
+     */
+    private final ByteBuffer directions;
+    private final Point[] destinations;
+    private final int[] destinationNodes;
+    private final int[] costs;
+    /**
+     * Nodes of a tree read from a snapshot with their padding, null if the nodes were not read from a snapshot
+     */
+    private final ByteBuffer nodeData;
+    private final int nodeChecksum;
+    private volatile boolean verified;
+
+    /**
+     * @param parents          Index of the parent node of each node, -1 for the origin
+     * @param directions       Ordinal of the direction from the parent to each node
+     * @param destinations     All found destinations, in the order they were found
+     * @param destinationNodes Node of each destination
+     * @param costs            Time from the origin to each destination, without the time of the origin
+     */
+    public PathTree(World world, Point origin, int[] parents, byte[] directions, Point[] destinations, int[] destinationNodes, int[] costs) {
+        this(world, origin, IntBuffer.wrap(parents), ByteBuffer.wrap(directions), destinations, destinationNodes, costs, null, 0);
+    }
+
+    private PathTree(World world, Point origin, IntBuffer parents, ByteBuffer directions, Point[] destinations, int[] destinationNodes, int[] costs,
+                     ByteBuffer nodeData, int nodeChecksum) {
+        this.world = world;
+        this.origin = origin;
+        this.parents = parents;
+        this.directions = directions;
+        this.destinations = destinations;
+        this.destinationNodes = destinationNodes;
+        this.costs = costs;
+        this.nodeData = nodeData;
+        this.nodeChecksum = nodeChecksum;
+        this.verified = nodeData == null;
+    }
+
+    public Point getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Amount of found destinations.
+     */
+    public int size() {
+        return destinations.length;
+    }
+
+    public Point getDestination(int i) {
+        return destinations[i];
+    }
+
+    public int getCost(int i) {
+        return costs[i];
+    }
+
+    /**
+     * Returns the path to the destination with the given index, its steps are walked from the tree on demand.
+     */
+    public Path getPath(int i) {
+        Point destination = destinations[i];
+        return new Path(origin, origin.getTime(world), destination, destination.getTime(world), costs[i], () -> createSteps(i));
+    }
+
+    /**
+     * Estimated amount of bytes used by the tree, without the destination points.
+     */
+    public long getMemoryFootprint() {
+        return 16L + parents.capacity() * 4L + 16L + directions.capacity() + 16L + destinations.length * 12L + 32L + costs.length * 8L;
+    }
+
+    private PackedSteps createSteps(int i) {
+        if (!verified) {
+            verifyNodes();
+        }
+        int length = 0;
+        for (int node = destinationNodes[i]; node >= 0; node = parents.get(node)) {
+            length++;
+        }
+        // Walk from the destination to the origin, the position of the parent is the opposite of the direction
+        byte[] stepDirections = new byte[length];
+        int[] times = new int[length];
+        int x = destinations[i].getX();
+        int y = destinations[i].getY();
+        for (int node = destinationNodes[i], step = length - 1; node >= 0; node = parents.get(node), step--) {
+            stepDirections[step] = directions.get(node);
+            times[step] = world.getFieldTime(x, y);
+            if (parents.get(node) >= 0) {
+                switch (Direction.DIRECTIONS[directions.get(node)]) {
+                    case LEFT -> x++;
+                    case RIGHT -> x--;
+                    case DOWN -> y--;
+                    case UP -> y++;
+                }
+            }
+        }
+        return new PackedSteps(origin, destinations[i], stepDirections, times);
+    }
+
+    /**
+     * Checks the nodes of a tree read from a snapshot against their checksum, once before the first path is walked.
+     */
+    private void verifyNodes() {
+        CRC32 checksum = new CRC32();
+        checksum.update(nodeData.duplicate());
+        if ((int) checksum.getValue() != nodeChecksum) {
+            throw new IllegalStateException("Nodes of the path tree from " + origin + " in the snapshot are corrupted");
+        }
+        verified = true;
+    }
+
+    /**
+     * Writes the tree in the format read by {@link #read(World, ByteBuffer, int)}: the origin, the amount of nodes and
+     * destinations, the destinations, a CRC32 checksum of everything before it, a CRC32 checksum of the nodes and the
+     * nodes. The size of the written tree is a multiple of four bytes.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        int n = world.getN();
+        ByteBuffer head = ByteBuffer.allocate(12 + destinations.length * 12);
+        head.putInt(origin.getY() * n + origin.getX());
+        head.putInt(parents.capacity());
+        head.putInt(destinations.length);
+        for (int i = 0; i < destinations.length; i++) {
+            head.putInt(destinations[i].getY() * n + destinations[i].getX());
+            head.putInt(destinationNodes[i]);
+            head.putInt(costs[i]);
+        }
+        ByteBuffer nodes = ByteBuffer.allocate(getNodeSize(parents.capacity()));
+        for (int i = 0; i < parents.capacity(); i++) {
+            nodes.putInt(parents.get(i));
+        }
+        for (int i = 0; i < directions.capacity(); i++) {
+            nodes.put(directions.get(i));
+        }
+        out.write(head.array());
+        out.writeInt(checksum(head.array()));
+        out.writeInt(checksum(nodes.array()));
+        out.write(nodes.array());
+    }
+
+    /**
+     * Reads a tree written by {@link #write(DataOutputStream)}. Only the destinations are copied and checked against
+     * their checksum, the nodes are read from the buffer and checked if a path is driven.
+     *
+     * @param offset Position of the tree in the buffer
+     * @throws IOException If the tree does not fit into the buffer, its destinations do not match their checksum or its
+     *                     cells are not on the field
+     */
+    public static PathTree read(World world, ByteBuffer buffer, int offset) throws IOException {
+        int n = world.getN();
+        getSize(buffer, offset);
+        int nodes = buffer.getInt(offset + 4);
+        int size = buffer.getInt(offset + 8);
+        int headSize = 12 + size * 12;
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.slice(offset, headSize));
+        if ((int) checksum.getValue() != buffer.getInt(offset + headSize)) {
+            throw new IOException("Checksum of the path tree at " + offset + " does not match");
+        }
+        int origin = checkRange(buffer.getInt(offset), n * n, offset);
+        Point[] destinations = new Point[size];
+        int[] destinationNodes = new int[size];
+        int[] costs = new int[size];
+        int position = offset + 12;
+        for (int i = 0; i < size; i++, position += 12) {
+            int cell = checkRange(buffer.getInt(position), n * n, offset);
+            destinations[i] = new Point(cell % n, cell / n);
+            destinationNodes[i] = checkRange(buffer.getInt(position + 4), nodes, offset);
+            costs[i] = buffer.getInt(position + 8);
+        }
+        // The checksum of the destinations is followed by the checksum of the nodes
+        int nodeChecksum = buffer.getInt(position + 4);
+        position += 8;
+        IntBuffer parents = buffer.slice(position, nodes * 4).asIntBuffer();
+        ByteBuffer directions = buffer.slice(position + nodes * 4, nodes);
+        return new PathTree(world, new Point(origin % n, origin / n), parents, directions, destinations, destinationNodes, costs,
+                buffer.slice(position, getNodeSize(nodes)), nodeChecksum);
+    }
+
+    /**
+     * Size of the tree that starts at the given offset, in bytes.
+     *
+     * @throws IOException If the tree does not fit into the buffer
+     */
+    public static int getSize(ByteBuffer buffer, int offset) throws IOException {
+        if (offset < 0 || buffer.limit() - offset < 12) {
+            throw new IOException("Path tree at " + offset + " is truncated");
+        }
+        int nodes = buffer.getInt(offset + 4);
+        int size = buffer.getInt(offset + 8);
+        long bytes = 20 + size * 12L + nodes * 4L + (nodes + 3L) / 4 * 4;
+        if (nodes < 0 || size < 0 || bytes > buffer.limit() - offset) {
+            throw new IOException("Path tree at " + offset + " is truncated");
+        }
+        return (int) bytes;
+    }
+
+    /**
+     * Size of the parents and the directions of the nodes, the directions are padded to a multiple of four bytes.
+     */
+    private static int getNodeSize(int nodes) {
+        return nodes * 4 + (nodes + 3) / 4 * 4;
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+        return (int) checksum.getValue();
+    }
+
+    private static int checkRange(int value, int limit, int offset) throws IOException {
+        if (value < 0 || value >= limit) {
+            throw new IOException("Path tree at " + offset + " contains the invalid index " + value);
+        }
+        return value;
+    }
+}
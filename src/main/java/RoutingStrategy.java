@@ -35,6 +35,9 @@ public interface RoutingStrategy {
             bundle.print();
             bundle = new Bundle(optimiser.process(thirdConfig));
             bundle.print();
+            Log.debug(String.format("Path Cache    : %d hits, %d misses, %d evictions, %d KB",
+                    store.getPathCacheHits(), store.getPathCacheMisses(), store.getPathCacheEvictions(),
+                    store.getPathCacheBytes() / 1024));
             bundle.drive(env);
         }
     }
@@ -46,7 +49,7 @@ public interface RoutingStrategy {
             PathCreator creator = env.getCreator();
             env.setupStore(new PathStore.Config(n->5 + n / 2, 0));
             PathStore store = env.getStore();
-            Predicate<Point> materialDestination = p -> p.hasMaterials(world);
+            Predicate<Position> materialDestination = p -> p.hasMaterials(world);
             Analytics analytics = env.getAnalytics();
             Stopwatch stopwatch = Stopwatch.createUnstarted();
             int totalMaterials = world.getTotalMaterials();
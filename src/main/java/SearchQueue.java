@@ -0,0 +1,77 @@
+import robot.World;
+
+/**
+ * Priority queue of cell indices used by the {@link PathCreator}, the cell with the smallest key is polled first.
+ * <p>
+ * All implementations expect the keys to be used like in the dijkstra algorithm, so a polled key is never smaller than
+ * the key polled before.
+ */
+public interface SearchQueue {
+
+    boolean isEmpty();
+
+    /**
+     * Adds the given cell, the cell is not allowed to be already contained.
+     */
+    void add(int cell, int key);
+
+    /**
+     * Lowers the key of an already contained cell. Does nothing if the given key is not smaller than the current one.
+     */
+    void decreaseKey(int cell, int key);
+
+    /**
+     * Called by the search for every relaxation of a contained cell, also if the key did not change. The given key is
+     * never bigger than the current one.
+     * <p>
+     * By default the key is only lowered. A queue can change the position of the cell between the cells with the
+     * same key, to poll cells with the same key in the same order as another queue.
+     */
+    default void update(int cell, int key) {
+        decreaseKey(cell, key);
+    }
+
+    /**
+     * Key of the cell with the smallest key, the queue is not allowed to be empty.
+     */
+    int peekKey();
+
+    /**
+     * Removes the cell with the smallest key.
+     *
+     * @return The index of the removed cell.
+     */
+    int poll();
+
+    /**
+     * Removes all cells from the queue.
+     */
+    void clear();
+
+    /**
+     * Defines the available queue implementations.
+     */
+    enum Type {
+        /**
+         * Binary heap, works for all keys. Cells with the same key are polled in the same order as by the
+         * {@link java.util.PriorityQueue} of the original search.
+         */
+        HEAP,
+        /**
+         * Circular bucket queue, only works because the field times are small integers. Cells with the same key are
+         * polled in the reverse order of their addition, so paths with the same cost can differ from the heap.
+         */
+        BUCKET;
+
+        /**
+         * Creates a queue which can hold all cells of the given world.
+         */
+        public SearchQueue create(World world) {
+            int cells = world.getN() * world.getN();
+            return switch (this) {
+                case HEAP -> new IndexedHeap(cells);
+                case BUCKET -> new BucketQueue(cells, BucketQueue.maxFieldTime(world));
+            };
+        }
+    }
+}
@@ -1,44 +1,235 @@
-import java.util.HashMap;
-import java.util.Map;
+import robot.World;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Times between the materials and from the materials to the factory, used by the optimiser to rate a cluster without
+ * going through the paths.
+ * <p>
+ * Every position gets a dense id on its first use, which is stored in an array indexed by the cell of the position.
+ * Only a few edges of each position are known, so each position has a small open addressing table of its edges
+ * instead of a row in a matrix of all positions. All lookups are free of allocations.
+ * <p>
+ * The lookup can be read and extended by several threads at once. A read never takes a lock. The edges are written
+ * into the table of the row under the lock of its page, the time before the destination, so a read that finds the
+ * destination also finds its time. A full table is copied into a row with twice the capacity, which replaces the old
+ * row, so the tables grow geometrically and only a resize publishes a new row. A read of the old row still sees all
+ * edges it had before the resize. Setting an edge that is already known with the same time changes nothing, so
+ * concurrent inserts of the same pair are idempotent. The rows are kept in pages of a fixed size that are never moved,
+ * so a row can not be lost by a concurrent growth.
+ */
 public class TimeLookup {
-    private final int[] factory;
-    private final int[][] edges;
+    private static final int INITIAL_ROW_CAPACITY = 32;
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final VarHandle CELL_IDS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle PAGES = MethodHandles.arrayElementVarHandle(Row[][].class);
+    private static final VarHandle ROWS = MethodHandles.arrayElementVarHandle(Row[].class);
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int fieldSize;
+    /**
+     * Id of the position on each cell plus one, zero if the cell has no id yet
+     */
+    private final int[] cellToId;
+    /**
+     * Rows of the positions in pages of {@link #PAGE_SIZE} ids, a page is created with the first id in it
+     */
+    private final Row[][] pages;
+    private final Object idLock = new Object();
     private int posIndex;
-    private final Map<Point, Integer> pointToIndex;
 
-    public TimeLookup(int n) {
-        this.factory = new int[n];
-        this.edges = new int[n][n];
-        this.pointToIndex = new HashMap<>();
+    /**
+     * @param world     The world instance to determine the size of the field.
+     * @param materials Expected amount of positions
+     */
+    public TimeLookup(World world, int materials) {
+        this.fieldSize = world.getN();
+        this.cellToId = new int[fieldSize * fieldSize];
+        this.pages = new Row[(fieldSize * fieldSize + PAGE_SIZE - 1) / PAGE_SIZE][];
+        for (int i = 0; i < Math.min((materials + PAGE_SIZE - 1) / PAGE_SIZE, pages.length); i++) {
+            pages[i] = createPage();
+        }
     }
 
     public void setEdge(Point from, Point to, int time) {
-        int a = pointToIndex.computeIfAbsent(from, p -> posIndex++);
-        int b = pointToIndex.computeIfAbsent(to, p -> posIndex++);
-        edges[a][b] = time;
+        int a = getOrCreateId(from);
+        int b = getOrCreateId(to);
+        Row[] page = getPage(a);
+        int index = a & (PAGE_SIZE - 1);
+        synchronized (page) {
+            Row row = page[index];
+            Row updated = row.setEdge(b, time);
+            if (updated != row) {
+                ROWS.setRelease(page, index, updated);
+            }
+        }
     }
 
-
     public void setFactory(Point pos, int time) {
-        int i = pointToIndex.computeIfAbsent(pos, p -> posIndex++);
-        factory[i] = time;
+        int id = getOrCreateId(pos);
+        Row[] page = getPage(id);
+        synchronized (page) {
+            page[id & (PAGE_SIZE - 1)].factory = time;
+        }
     }
 
+    /**
+     * Returns the time from the first to the second position, zero if the edge is unknown.
+     */
     public int getEdge(Point from, Point to) {
-        Integer a = pointToIndex.get(from);
-        Integer b = pointToIndex.get(to);
-        if (a == null || b == null) {
-            throw new IllegalStateException();
+        Row row = getRow(getId(from));
+        int b = getId(to);
+        int[] targets = row.targets;
+        if (targets == null) {
+            return 0;
         }
-        return edges[a][b];
+        int slot = findSlot(targets, b);
+        return targets[slot] == 0 ? 0 : (int) SLOTS.getOpaque(row.times, slot);
+    }
+
+    /**
+     * Returns the time from the first to the second position, or the lower bound of the landmarks if the edge is
+     * unknown. Used to rate pairs that were not searched yet without a search.
+     *
+     * @param landmarks Lower bounds of the unknown edges, zero is used if null
+     */
+    public int getEdge(Point from, Point to, Landmarks landmarks) {
+        Row row = getRow(getId(from));
+        int b = getId(to);
+        int[] targets = row.targets;
+        int slot = targets == null ? -1 : findSlot(targets, b);
+        if (slot >= 0 && targets[slot] != 0) {
+            return (int) SLOTS.getOpaque(row.times, slot);
+        }
+        return landmarks == null ? 0 : landmarks.getLowerBound(from, to);
     }
 
     public int toFactory(Point pos) {
-        Integer index = pointToIndex.get(pos);
-        if (index == null) {
+        return getRow(getId(pos)).factory;
+    }
+
+    private Row getRow(int id) {
+        return (Row) ROWS.getAcquire(getPage(id), id & (PAGE_SIZE - 1));
+    }
+
+    private Row[] getPage(int id) {
+        return (Row[]) PAGES.getAcquire(pages, id >>> PAGE_BITS);
+    }
+
+    private int getId(Point pos) {
+        int id = (int) CELL_IDS.getAcquire(cellToId, pos.getY() * fieldSize + pos.getX()) - 1;
+        if (id < 0) {
             throw new IllegalStateException();
         }
-        return factory[index];
+        return id;
+    }
+
+    private int getOrCreateId(Point pos) {
+        int cell = pos.getY() * fieldSize + pos.getX();
+        int id = (int) CELL_IDS.getAcquire(cellToId, cell);
+        if (id != 0) {
+            return id - 1;
+        }
+        synchronized (idLock) {
+            id = cellToId[cell];
+            if (id == 0) {
+                id = ++posIndex;
+                int page = (id - 1) >>> PAGE_BITS;
+                if (pages[page] == null) {
+                    PAGES.setRelease(pages, page, createPage());
+                }
+                // Published after its page, so a thread that sees the id also sees the row
+                CELL_IDS.setRelease(cellToId, cell, id);
+            }
+            return id - 1;
+        }
+    }
+
+    private static Row[] createPage() {
+        Row[] page = new Row[PAGE_SIZE];
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page[i] = new Row(0, null, null);
+        }
+        return page;
+    }
+
+    /**
+     * Slot of the destination in the table, or the empty slot where it has to be inserted.
+     */
+    private static int findSlot(int[] targets, int id) {
+        int mask = targets.length - 1;
+        int hash = id * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        int target;
+        while ((target = (int) SLOTS.getAcquire(targets, slot)) != 0 && target != id + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Time to the factory and edges of one position. The edges are written in place, the arrays are only replaced by a
+     * new row if the table is full. All writes hold the lock of the page of the row.
+     */
+    private static final class Row {
+        private volatile int factory;
+        /**
+         * Id of the edge destinations plus one, zero marks an empty slot. Null if the position has no edges yet.
+         */
+        private final int[] targets;
+        /**
+         * Time of the edges, stored in the same slot as the destination
+         */
+        private final int[] times;
+        private int count;
+
+        private Row(int factory, int[] targets, int[] times) {
+            this.factory = factory;
+            this.targets = targets;
+            this.times = times;
+        }
+
+        /**
+         * Sets the edge in this row, or returns a new row with twice the capacity and the edge if the table of this
+         * row is full.
+         */
+        private Row setEdge(int id, int time) {
+            if (targets != null) {
+                int slot = findSlot(targets, id);
+                if (targets[slot] != 0) {
+                    SLOTS.setOpaque(times, slot, time);
+                    return this;
+                }
+                // The load factor is kept below one half, so the probe sequences stay short
+                if ((count + 1) * 2 <= targets.length) {
+                    times[slot] = time;
+                    // Published after the time, a read that finds the destination also finds its time
+                    SLOTS.setRelease(targets, slot, id + 1);
+                    count++;
+                    return this;
+                }
+            }
+            int capacity = targets == null ? INITIAL_ROW_CAPACITY : targets.length * 2;
+            Row grown = new Row(factory, new int[capacity], new int[capacity]);
+            for (int i = 0; targets != null && i < targets.length; i++) {
+                if (targets[i] != 0) {
+                    grown.insert(targets[i] - 1, times[i]);
+                }
+            }
+            grown.insert(id, time);
+            return grown;
+        }
+
+        /**
+         * Inserts an edge into a row that is not published yet.
+         */
+        private void insert(int id, int time) {
+            int slot = findSlot(targets, id);
+            targets[slot] = id + 1;
+            times[slot] = time;
+            count++;
+        }
     }
 }